@@ -0,0 +1,16 @@
+/**
+ * Order in which IMECEPathFinder.searchAll hands the results of a batch of
+ * missions to the caller.
+ */
+public enum BatchOrder {
+    /**
+     * In the order of the missions, holding back results that complete before
+     * the missions ahead of them.
+     */
+    INPUT,
+
+    /**
+     * As soon as each search completes.
+     */
+    COMPLETION
+}
@@ -0,0 +1,310 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.InputMismatchException;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary elevation grid, opened by memory-mapping the file.
+ *
+ * Layout, all values little-endian:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     8  magic "IMECEGRD"
+ *      8     4  format version (2)
+ *     12     4  rows
+ *     16     4  cols
+ *     20     4  element width in bytes (1, 2 or 4)
+ *     24     4  min elevation
+ *     28     4  max elevation
+ *     32     8  CRC32C of the cell bytes
+ *     40     4  padding cells on every side
+ *     44    20  reserved, zero
+ *     64        (rows + 2 * padding) * (cols + 2 * padding) cells, row-major
+ * </pre>
+ *
+ * Cells are encoded as in OffHeapElevationGrid: with 1 or 2 bytes they hold
+ * the unsigned offset from min, with 4 bytes the elevation itself, and padding
+ * cells hold the sentinel code. Opening only reads the header, map() maps the
+ * cells as an OffHeapElevationGrid without copying them and the checksum is
+ * verified on demand.
+ */
+public class BinaryGridFile {
+	public static final long MAGIC = 0x4452474543454D49L; // "IMECEGRD" read as a little-endian long
+	public static final int VERSION = 2;
+	public static final int HEADER_SIZE = 64;
+
+	private final String filename; // path of the file
+	private final int rows; // number of rows in the grid
+	private final int cols; // number of columns in the grid
+	private final int padding; // padding cells on every side
+	private final int elementWidth; // bytes per cell
+	private final int min; // smallest elevation in the grid
+	private final int max; // largest elevation in the grid
+	private final long checksum; // CRC32C of the cell bytes
+
+	private BinaryGridFile(String filename, int rows, int cols, int padding, int elementWidth, int min, int max,
+			long checksum) {
+		this.filename = filename;
+		this.rows = rows;
+		this.cols = cols;
+		this.padding = padding;
+		this.elementWidth = elementWidth;
+		this.min = min;
+		this.max = max;
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Check whether the file starts with the binary grid magic number.
+	 */
+	public static boolean isBinaryGrid(String filename) {
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			return channel.read(magic, 0) == 8 && magic.getLong(0) == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Read the header of a binary grid file.
+	 *
+	 * @throws InputMismatchException if the file is not a valid binary grid
+	 */
+	public static BinaryGridFile open(String filename) throws IOException {
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (channel.read(header, 0) != HEADER_SIZE || header.getLong(0) != MAGIC)
+				throw new InputMismatchException(filename + " is not a binary grid file");
+			if (header.getInt(8) != VERSION)
+				throw new InputMismatchException("Unsupported binary grid version " + header.getInt(8) + " in "
+						+ filename + ", convert the text grid again");
+
+			BinaryGridFile file = new BinaryGridFile(filename, header.getInt(12), header.getInt(16), header.getInt(40),
+					header.getInt(20), header.getInt(24), header.getInt(28), header.getLong(32));
+			if (file.elementWidth != 1 && file.elementWidth != 2 && file.elementWidth != 4)
+				throw new InputMismatchException("Unsupported element width " + file.elementWidth + " in " + filename);
+			if (channel.size() < HEADER_SIZE + file.dataSize())
+				throw new InputMismatchException(filename + " is shorter than its " + file.rows + "x" + file.cols
+						+ " header");
+			return file;
+		}
+	}
+
+	/**
+	 * Map the cells of the file as a read-only off-heap grid. Nothing is copied,
+	 * the pages are loaded by the OS when first read and shared with every other
+	 * process mapping the same file.
+	 */
+	public OffHeapElevationGrid map() throws IOException {
+		long bytes = dataSize();
+		ByteBuffer[] segments = new ByteBuffer[(int) ((bytes + OffHeapElevationGrid.SEGMENT_SIZE - 1)
+				>>> OffHeapElevationGrid.SEGMENT_SHIFT)];
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			for (int s = 0; s < segments.length; s++) {
+				long start = (long) s << OffHeapElevationGrid.SEGMENT_SHIFT;
+				long length = Math.min(OffHeapElevationGrid.SEGMENT_SIZE, bytes - start);
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + start, length)
+						.order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+
+		OffHeapElevationGrid grid = new OffHeapElevationGrid(cols, rows, padding, elementWidth, min, segments);
+		grid.setRange(min, max);
+		return grid;
+	}
+
+	/**
+	 * Write the grid in the binary format with the given padding, using the
+	 * narrowest element width that holds every value of its elevation range.
+	 */
+	public static void write(String filename, ElevationGrid grid, int padding) throws IOException {
+		int rows = grid.getHeight();
+		int cols = grid.getWidth();
+		int[] values = new int[cols];
+		try (RowWriter writer = new RowWriter(filename, rows, cols, padding, grid.getMin(), grid.getMax())) {
+			for (int y = 0; y < rows; y++) {
+				for (int x = 0; x < cols; x++)
+					values[x] = grid.get(x, y);
+				writer.row(y, values);
+			}
+		}
+	}
+
+	/**
+	 * Convert a whitespace separated text grid into the binary format, with one
+	 * cell of padding, without holding the grid in memory. A first pass over the
+	 * text checks it and finds the elevation range, which sets the element
+	 * width, a second one streams the rows into the file.
+	 */
+	public static void convert(String textFile, int rows, int cols, String binaryFile) throws IOException {
+		ElevationFileReader range = new ElevationFileReader(rows, cols);
+		range.read(textFile, (y, values) -> {
+		});
+		try (RowWriter writer = new RowWriter(binaryFile, rows, cols, 1, range.getMin(), range.getMax())) {
+			new ElevationFileReader(rows, cols).readInOrder(textFile, writer::row);
+		}
+	}
+
+	/**
+	 * Writes a binary grid file from its rows, given in order, one row at a
+	 * time. The header, which holds the checksum of every cell, is written on
+	 * close.
+	 */
+	private static final class RowWriter implements Closeable {
+		private final FileChannel channel; // file being written
+		private final int rows; // number of rows in the grid
+		private final int cols; // number of columns in the grid
+		private final int padding; // padding cells on every side
+		private final int elementWidth; // bytes per cell
+		private final int min; // smallest elevation, subtracted from narrow codes
+		private final int max; // largest elevation
+		private final int sentinel; // code of the padding cells
+		private final ByteBuffer row; // encoded row, padding included
+		private final CRC32C crc = new CRC32C(); // checksum of the cells written so far
+		private int nextRow; // row expected next
+
+		RowWriter(String filename, int rows, int cols, int padding, int min, int max) throws IOException {
+			this.rows = rows;
+			this.cols = cols;
+			this.padding = padding;
+			this.elementWidth = ElevationGrid.elementWidthFor(min, max);
+			this.min = min;
+			this.max = max;
+			this.sentinel = OffHeapElevationGrid.sentinelCode(elementWidth);
+			this.row = ByteBuffer.allocate((cols + 2 * padding) * elementWidth).order(ByteOrder.LITTLE_ENDIAN);
+			this.channel = FileChannel.open(Path.of(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				channel.position(HEADER_SIZE);
+				for (int y = 0; y < padding; y++)
+					writePaddingRow();
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Add row y, which must follow the row added last.
+		 */
+		void row(int y, int[] values) throws IOException {
+			if (y != nextRow)
+				throw new IllegalStateException("Expected row " + nextRow + " but got row " + y);
+			row.clear();
+			for (int x = -padding; x < cols + padding; x++) {
+				// elevations are stored as offsets from min unless they take 4 bytes
+				int code = x < 0 || x >= cols ? sentinel : elementWidth == 4 ? values[x] : values[x] - min;
+				put(code);
+			}
+			write();
+			nextRow++;
+		}
+
+		private void writePaddingRow() throws IOException {
+			row.clear();
+			while (row.hasRemaining())
+				put(sentinel);
+			write();
+		}
+
+		private void put(int code) {
+			if (elementWidth == 1)
+				row.put((byte) code);
+			else if (elementWidth == 2)
+				row.putShort((short) code);
+			else
+				row.putInt(code);
+		}
+
+		private void write() throws IOException {
+			row.flip();
+			crc.update(row.duplicate());
+			while (row.hasRemaining())
+				channel.write(row);
+		}
+
+		/**
+		 * Write the bottom padding and the header and close the file, which must
+		 * have been given every row.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				if (nextRow != rows)
+					throw new IllegalStateException("Binary grid closed after " + nextRow + " of " + rows + " rows");
+				for (int y = 0; y < padding; y++)
+					writePaddingRow();
+
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				header.putLong(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putInt(elementWidth).putInt(min)
+						.putInt(max).putLong(crc.getValue()).putInt(padding);
+				header.clear();
+				while (header.hasRemaining())
+					channel.write(header, header.position());
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Command line converter: text_grid rows cols binary_grid
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			System.err.println("Usage: java BinaryGridFile <text grid> <rows> <cols> <binary grid>");
+			System.exit(1);
+		}
+		convert(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]), args[3]);
+	}
+
+	/**
+	 * Recompute the CRC32C of the cell bytes and compare it with the header.
+	 */
+	public boolean verifyChecksum() throws IOException {
+		CRC32C crc = new CRC32C();
+		for (ByteBuffer segment : map().segments()) {
+			crc.update(segment.duplicate().clear());
+		}
+		return crc.getValue() == checksum;
+	}
+
+	private long dataSize() {
+		return (long) (rows + 2 * padding) * (cols + 2 * padding) * elementWidth;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	public int getPadding() {
+		return padding;
+	}
+
+	public int getElementWidth() {
+		return elementWidth;
+	}
+
+	public int getMin() {
+		return min;
+	}
+
+	public int getMax() {
+		return max;
+	}
+
+	public long getChecksum() {
+		return checksum;
+	}
+}
@@ -0,0 +1,43 @@
+import java.util.Arrays;
+
+/**
+ * Elevation grid storing every cell as an unsigned 8-bit offset from the
+ * smallest elevation, for ranges of at most MAX_RANGE. The top code is kept
+ * for padding cells, which therefore read as offset + 255, above every
+ * elevation in the grid.
+ */
+public class ByteElevationGrid extends ElevationGrid {
+	public static final int MAX_RANGE = 0xFE; // widest max - min the codes can hold
+	private static final byte SENTINEL = (byte) 0xFF; // code of the padding cells
+
+	private final byte[] cells; // elevation - offset, indexed by cell id
+	private final int offset; // elevation of code 0
+
+	public ByteElevationGrid(int width, int height, int padding, int offset) {
+		this(new RowMajorLayout(width, height, padding), offset);
+	}
+
+	public ByteElevationGrid(GridLayout layout, int offset) {
+		super(layout);
+		this.offset = offset;
+		cells = new byte[size()];
+		// padding cells, and cells a layout adds to round the grid up, hold the sentinel
+		if (size() > (long) width * height)
+			Arrays.fill(cells, SENTINEL);
+	}
+
+	@Override
+	public int get(int index) {
+		return (cells[index] & 0xFF) + offset;
+	}
+
+	@Override
+	public void set(int index, int value) {
+		cells[index] = (byte) (value - offset);
+	}
+
+	@Override
+	public int getBytesPerCell() {
+		return 1;
+	}
+}
@@ -0,0 +1,26 @@
+/**
+ * Order in which the cells of an ElevationGrid, and therefore the cost and
+ * parent arrays of a search over it, are laid out in memory.
+ */
+public enum CellOrder {
+    /**
+     * One row after the other. Vertically adjacent cells are a whole row apart,
+     * so on wide grids every north or south step of a search touches a new cache
+     * line.
+     */
+    ROW_MAJOR,
+
+    /**
+     * Morton order inside squares of MortonLayout.DEFAULT_SQUARE_SIZE cells:
+     * cell ids interleave the bits of the column and the row, so every aligned
+     * square of 2^k x 2^k cells is contiguous. Neighbours in any direction are
+     * usually close in memory.
+     */
+    Z_ORDER,
+
+    /**
+     * Square blocks of BlockedLayout.DEFAULT_BLOCK_SIZE cells, row-major inside a
+     * block and block after block across the grid.
+     */
+    BLOCKED
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 8-connected components of the passable cells of a PassabilityMask. Two cells
+ * are connected exactly when a search under the mask's maxFlyingHeight can get
+ * from one to the other, so a mission between different components can be
+ * rejected without searching.
+ *
+ * The rows are split into strips labelled in parallel with a union-find over
+ * the cell ids of each strip. The strips are then joined along their boundary
+ * rows, and every cell is given the root of its set as its label.
+ */
+public class ComponentLabels {
+	private static final int MIN_STRIP_ROWS = 64; // fewest rows worth a task of their own
+
+	private final PassabilityMask mask; // cells the components are made of
+	private final int[] labels; // component of every cell id, -1 for impassable cells
+	private final int componentCount; // number of components
+
+	private ComponentLabels(PassabilityMask mask, int[] labels, int componentCount) {
+		this.mask = mask;
+		this.labels = labels;
+		this.componentCount = componentCount;
+	}
+
+	/**
+	 * Label the components of the passable cells of the mask.
+	 */
+	public static ComponentLabels build(PassabilityMask mask) {
+		ElevationGrid grid = mask.getGrid();
+		int width = grid.getWidth();
+		int height = grid.getHeight();
+		int[] parent = new int[grid.size()];
+
+		int strips = (int) Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4L,
+				height / MIN_STRIP_ROWS));
+		int rowsPerStrip = (height + strips - 1) / Math.max(1, strips);
+
+		// label every strip on its own, the strips touch disjoint cell ids
+		IntStream.range(0, strips).parallel().forEach(strip -> {
+			int from = strip * rowsPerStrip;
+			int to = Math.min(height, from + rowsPerStrip);
+			for (int y = from; y < to; y++) {
+				for (int x = 0; x < width; x++) {
+					int id = grid.index(x, y);
+					if (!mask.isPassable(id)) {
+						parent[id] = -1;
+						continue;
+					}
+					parent[id] = id;
+					// neighbours already visited: west, and the three above within the strip
+					if (x > 0)
+						join(parent, mask, id, grid.index(x - 1, y));
+					if (y > from)
+						joinAbove(parent, mask, grid, id, x, y);
+				}
+			}
+		});
+
+		// join every strip to the one above it along its first row
+		for (int y = rowsPerStrip; y < height; y += rowsPerStrip) {
+			for (int x = 0; x < width; x++) {
+				int id = grid.index(x, y);
+				if (mask.isPassable(id))
+					joinAbove(parent, mask, grid, id, x, y);
+			}
+		}
+
+		// label the cells with their roots, only reading the parents so the strips
+		// can be resolved in parallel
+		int[] labels = new int[grid.size()];
+		Arrays.fill(labels, -1);
+		int[] roots = new int[strips];
+		IntStream.range(0, strips).parallel().forEach(strip -> {
+			int from = strip * rowsPerStrip;
+			int to = Math.min(height, from + rowsPerStrip);
+			for (int y = from; y < to; y++) {
+				for (int x = 0; x < width; x++) {
+					int id = grid.index(x, y);
+					if (parent[id] < 0)
+						continue;
+					int root = id;
+					while (parent[root] != root)
+						root = parent[root];
+					labels[id] = root;
+					if (root == id)
+						roots[strip]++;
+				}
+			}
+		});
+
+		int componentCount = 0;
+		for (int count : roots)
+			componentCount += count;
+		return new ComponentLabels(mask, labels, componentCount);
+	}
+
+	private static void joinAbove(int[] parent, PassabilityMask mask, ElevationGrid grid, int id, int x, int y) {
+		if (x > 0)
+			join(parent, mask, id, grid.index(x - 1, y - 1));
+		join(parent, mask, id, grid.index(x, y - 1));
+		if (x < grid.getWidth() - 1)
+			join(parent, mask, id, grid.index(x + 1, y - 1));
+	}
+
+	/**
+	 * Merge the sets of two cells if the neighbour is passable, keeping the
+	 * smaller root.
+	 */
+	private static void join(int[] parent, PassabilityMask mask, int id, int neighbour) {
+		if (!mask.isPassable(neighbour))
+			return;
+		int a = find(parent, id);
+		int b = find(parent, neighbour);
+		if (a < b)
+			parent[b] = a;
+		else if (b < a)
+			parent[a] = b;
+	}
+
+	private static int find(int[] parent, int id) {
+		while (parent[id] != id) {
+			parent[id] = parent[parent[id]]; // path halving
+			id = parent[id];
+		}
+		return id;
+	}
+
+	/**
+	 * Component of the cell id, or -1 if the cell is not passable.
+	 */
+	public int label(int id) {
+		return labels[id];
+	}
+
+	/**
+	 * Whether both cells are passable and in the same component.
+	 */
+	public boolean connected(int a, int b) {
+		return labels[a] >= 0 && labels[a] == labels[b];
+	}
+
+	public int getComponentCount() {
+		return componentCount;
+	}
+
+	public int getMaxFlyingHeight() {
+		return mask.getMaxFlyingHeight();
+	}
+
+	public PassabilityMask getMask() {
+		return mask;
+	}
+
+	/**
+	 * Bytes the labels take, 4 per cell id, not counting the mask.
+	 */
+	public long getBytes() {
+		return (long) labels.length * Integer.BYTES;
+	}
+}
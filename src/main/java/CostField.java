@@ -0,0 +1,242 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+
+/**
+ * Cost of the cheapest path from one source to every cell of a terrain, with
+ * the direction each cell is entered in on that path, as left by a Dijkstra
+ * search run to completion. Paths to any number of destinations are then
+ * walked back through the parents without searching again.
+ *
+ * Costs are kept as floats, 5 bytes per cell id with the parents, so they
+ * carry about 7 significant digits; result recomputes the exact cost of a path
+ * from its steps. A field can be written to a file through a memory mapping
+ * and read back later for the same terrain, recognised by its version and the
+ * checksum of its elevations.
+ *
+ * File layout, all values little-endian:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     8  magic "IMECECST"
+ *      8     4  format version (2)
+ *     12     4  rows
+ *     16     4  cols
+ *     20     4  source x
+ *     24     4  source y
+ *     28     4  maxFlyingHeight
+ *     32     8  fuelCostPerUnit
+ *     40     8  climbingCostPerUnit
+ *     48     8  terrain version
+ *     56     8  CRC32C of the terrain elevations, see TerrainSnapshot.getChecksum
+ *     64        rows * cols cells, row-major: float cost, byte parent direction
+ * </pre>
+ */
+public class CostField {
+	public static final long MAGIC = 0x5453434543454D49L; // "IMECECST" read as a little-endian long
+	public static final int VERSION = 2;
+	public static final int HEADER_SIZE = 64;
+	private static final int CELL_BYTES = 5; // float cost and byte parent per cell in the file
+	private static final long MAP_SIZE = 1L << 30; // largest mapping made at once
+
+	private final TerrainSnapshot terrain; // terrain the field was computed on
+	private final QueryParameters parameters; // flying limit and costs it was computed with
+	private final Point source; // cell every path starts from
+	private final float[] costs; // cost from source of every cell id, POSITIVE_INFINITY if unreachable
+	private final byte[] parents; // direction every cell id was entered in, -1 for none
+	private final int[] offsets; // neighbour id offsets of the grid, null to step by coordinates
+
+	CostField(TerrainSnapshot terrain, QueryParameters parameters, Point source, float[] costs, byte[] parents,
+			int[] offsets) {
+		this.terrain = terrain;
+		this.parameters = parameters;
+		this.source = source;
+		this.costs = costs;
+		this.parents = parents;
+		this.offsets = offsets;
+	}
+
+	public TerrainSnapshot getTerrain() {
+		return terrain;
+	}
+
+	public QueryParameters getParameters() {
+		return parameters;
+	}
+
+	public Point getSource() {
+		return source;
+	}
+
+	/**
+	 * Whether a path from the source to the cell exists.
+	 */
+	public boolean isReachable(Point end) {
+		return costs[id(end)] != Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Cost of the cheapest path from the source to the cell, rounded to a float,
+	 * or Float.POSITIVE_INFINITY if there is none.
+	 */
+	public float getCost(Point end) {
+		return costs[id(end)];
+	}
+
+	/**
+	 * The cheapest path from the source to the cell, walked back through the
+	 * parents, or an empty path if there is none.
+	 */
+	public PackedPath pathTo(Point end) {
+		int id = id(end);
+		if (costs[id] == Float.POSITIVE_INFINITY)
+			return PackedPath.EMPTY;
+		return IMECEPathFinder.tracePath(terrain.getGrid(), offsets, parents, id);
+	}
+
+	/**
+	 * The path to the cell as a SearchResult of a DIJKSTRA search, its cost summed
+	 * from the steps of the path in double precision. No cell is expanded, the
+	 * elapsed time is that of the walk.
+	 */
+	public SearchResult result(Point end) {
+		long begin = System.nanoTime();
+		PackedPath path = pathTo(end);
+		double cost = path.isEmpty() ? Double.POSITIVE_INFINITY
+				: IMECEPathFinder.pathCost(terrain.getGrid(), parameters, path);
+		return new SearchResult(terrain, parameters, SearchMode.DIJKSTRA, path, cost, 0, System.nanoTime() - begin);
+	}
+
+	/**
+	 * Cell id of the point, which must be a cell of the grid.
+	 */
+	private int id(Point end) {
+		ElevationGrid grid = terrain.getGrid();
+		IMECEPathFinder.checkCell(grid, end);
+		return grid.index(end.x, end.y);
+	}
+
+	/**
+	 * Whether (x, y) is a cell of the grid with a path from the source.
+	 */
+	boolean reaches(int x, int y) {
+		ElevationGrid grid = terrain.getGrid();
+		return grid.contains(x, y) && costs[grid.index(x, y)] != Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * The same costs and parents on another terrain of the same layout, for a
+	 * terrain change known not to affect them.
+	 */
+	CostField onTerrain(TerrainSnapshot next) {
+		return new CostField(next, parameters, source, costs, parents, offsets);
+	}
+
+	/**
+	 * Bytes the costs and parents take.
+	 */
+	public long getBytes() {
+		return (long) costs.length * Float.BYTES + parents.length;
+	}
+
+	/**
+	 * Write the field to a file, through memory mappings of at most MAP_SIZE
+	 * bytes. Cells are stored row-major whatever the layout of the grid.
+	 */
+	public void write(String filename) throws IOException {
+		ElevationGrid grid = terrain.getGrid();
+		int rows = grid.getHeight();
+		int cols = grid.getWidth();
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putLong(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putInt(source.x).putInt(source.y)
+					.putInt(parameters.getMaxFlyingHeight()).putDouble(parameters.getFuelCostPerUnit())
+					.putDouble(parameters.getClimbingCostPerUnit()).putLong(terrain.getVersion())
+					.putLong(terrain.getChecksum());
+			header.clear();
+			while (header.hasRemaining())
+				channel.write(header, header.position());
+
+			int rowsPerMap = rowsPerMap(cols);
+			for (int from = 0; from < rows; from += rowsPerMap) {
+				int to = Math.min(rows, from + rowsPerMap);
+				ByteBuffer cells = channel.map(FileChannel.MapMode.READ_WRITE, cellOffset(from, cols),
+						(long) (to - from) * cols * CELL_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				for (int y = from; y < to; y++) {
+					for (int x = 0; x < cols; x++) {
+						int id = grid.index(x, y);
+						cells.putFloat(costs[id]).put(parents[id]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read a field written by write back onto the terrain it was computed on.
+	 *
+	 * @throws InputMismatchException if the file is not a cost field of a grid of
+	 *                                the terrain's size, version and elevations
+	 */
+	public static CostField read(String filename, TerrainSnapshot terrain) throws IOException {
+		ElevationGrid grid = terrain.getGrid();
+		int rows = grid.getHeight();
+		int cols = grid.getWidth();
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (channel.read(header, 0) != HEADER_SIZE || header.getLong(0) != MAGIC)
+				throw new InputMismatchException(filename + " is not a cost field file");
+			if (header.getInt(8) != VERSION)
+				throw new InputMismatchException("Unsupported cost field version " + header.getInt(8) + " in " + filename);
+			if (header.getInt(12) != rows || header.getInt(16) != cols)
+				throw new InputMismatchException("Expected a cost field of a " + rows + "x" + cols + " grid in "
+						+ filename + " but found " + header.getInt(12) + "x" + header.getInt(16));
+			if (header.getLong(48) != terrain.getVersion())
+				throw new InputMismatchException(filename + " was computed on terrain version " + header.getLong(48)
+						+ ", not " + terrain.getVersion());
+			if (header.getLong(56) != terrain.getChecksum())
+				throw new InputMismatchException(filename + " was computed on other elevations, checksum "
+						+ Long.toHexString(header.getLong(56)) + " instead of " + Long.toHexString(terrain.getChecksum()));
+			if (channel.size() < cellOffset(rows, cols))
+				throw new InputMismatchException(filename + " is shorter than its " + rows + "x" + cols + " header");
+
+			Point source = new Point(header.getInt(20), header.getInt(24));
+			QueryParameters parameters = new QueryParameters(header.getInt(28), header.getDouble(32),
+					header.getDouble(40));
+			float[] costs = new float[grid.size()];
+			byte[] parents = new byte[grid.size()];
+			Arrays.fill(costs, Float.POSITIVE_INFINITY);
+			Arrays.fill(parents, (byte) -1);
+
+			int rowsPerMap = rowsPerMap(cols);
+			for (int from = 0; from < rows; from += rowsPerMap) {
+				int to = Math.min(rows, from + rowsPerMap);
+				ByteBuffer cells = channel.map(FileChannel.MapMode.READ_ONLY, cellOffset(from, cols),
+						(long) (to - from) * cols * CELL_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				for (int y = from; y < to; y++) {
+					for (int x = 0; x < cols; x++) {
+						int id = grid.index(x, y);
+						costs[id] = cells.getFloat();
+						parents[id] = cells.get();
+					}
+				}
+			}
+			return new CostField(terrain, parameters, source, costs, parents,
+					IMECEPathFinder.neighbourOffsets(grid));
+		}
+	}
+
+	private static int rowsPerMap(int cols) {
+		return (int) Math.max(1, MAP_SIZE / ((long) Math.max(1, cols) * CELL_BYTES));
+	}
+
+	private static long cellOffset(int row, int cols) {
+		return HEADER_SIZE + (long) row * cols * CELL_BYTES;
+	}
+}
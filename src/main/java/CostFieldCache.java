@@ -0,0 +1,243 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recently computed CostFields of one terrain, keyed by source and
+ * QueryParameters, within a memory budget. When adding a field would exceed
+ * the budget, the least recently used fields are evicted first. Fields larger
+ * than the whole budget are not kept, getRejections counts them. The default
+ * budget is a quarter of the maximum heap; one field of an 8192x8192 grid
+ * takes about 335 MB.
+ *
+ * When the terrain changes, rebase keeps only the fields the change cannot
+ * affect: those that reach none of the changed cells or their neighbours.
+ * Every other field is dropped. The kept fields are moved onto the new
+ * terrain. A lookup on a newer terrain than the cached one rebases to it, one
+ * on an older terrain, from a search still running on the terrain before an
+ * update, misses and leaves the cache where it is.
+ *
+ * All methods are synchronized. Fields are computed outside the cache, so two
+ * threads missing the same key at once both compute it.
+ */
+public class CostFieldCache {
+	public static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 4; // bytes kept by default
+
+	private final long memoryBudget; // most bytes of fields kept
+	private final LinkedHashMap<Key, CostField> fields = new LinkedHashMap<>(16, 0.75f, true); // in access order
+	private TerrainSnapshot terrain; // terrain every kept field was computed on
+	private long bytes; // bytes taken by the kept fields
+	private long hits; // lookups answered from the cache
+	private long misses; // lookups that found no field
+	private long evictions; // fields dropped to stay within the budget
+	private long invalidations; // fields dropped because the terrain changed under them
+	private long rejections; // fields not kept because they alone exceed the budget
+
+	public CostFieldCache(long memoryBudget) {
+		if (memoryBudget < 0)
+			throw new IllegalArgumentException("Negative memory budget: " + memoryBudget);
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Source and parameters a field was computed for.
+	 */
+	private static class Key {
+		final int x; // column of the source
+		final int y; // row of the source
+		final QueryParameters parameters;
+
+		Key(Point source, QueryParameters parameters) {
+			this.x = source.x;
+			this.y = source.y;
+			this.parameters = parameters;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (o == null || getClass() != o.getClass())
+				return false;
+			Key other = (Key) o;
+			return x == other.x && y == other.y && parameters.equals(other.parameters);
+		}
+
+		@Override
+		public int hashCode() {
+			return (x * 31 + y) * 31 + parameters.hashCode();
+		}
+	}
+
+	/**
+	 * The field of the source and parameters on the given terrain, or null if it
+	 * is not cached. A terrain newer than the one cached is rebased to first, an
+	 * older one is a miss.
+	 */
+	public synchronized CostField get(TerrainSnapshot snapshot, Point source, QueryParameters parameters) {
+		if (snapshot != terrain) {
+			if (terrain != null && !snapshot.isNewerThan(terrain)) {
+				misses++;
+				return null;
+			}
+			rebase(snapshot);
+		}
+		CostField field = fields.get(new Key(source, parameters));
+		if (field == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return field;
+	}
+
+	/**
+	 * Keep the field, evicting the least recently used ones as long as the budget
+	 * would be exceeded. Fields of a terrain other than the one cached are
+	 * ignored, fields larger than the budget are counted as rejections.
+	 */
+	public synchronized void put(CostField field) {
+		if (terrain == null)
+			terrain = field.getTerrain();
+		long size = field.getBytes();
+		if (field.getTerrain() != terrain)
+			return;
+		if (size > memoryBudget) {
+			rejections++;
+			return;
+		}
+
+		CostField previous = fields.remove(new Key(field.getSource(), field.getParameters()));
+		if (previous != null)
+			bytes -= previous.getBytes();
+		Iterator<CostField> eldest = fields.values().iterator();
+		while (bytes + size > memoryBudget && eldest.hasNext()) {
+			bytes -= eldest.next().getBytes();
+			eldest.remove();
+			evictions++;
+		}
+		fields.put(new Key(field.getSource(), field.getParameters()), field);
+		bytes += size;
+	}
+
+	/**
+	 * Move the cache onto a new terrain. Fields stay only if the terrain has the
+	 * same layout and none of the cells that changed elevation, or their
+	 * neighbours, is reached by the field. The cells are compared once for all
+	 * fields.
+	 */
+	public synchronized void rebase(TerrainSnapshot next) {
+		TerrainSnapshot previous = terrain;
+		terrain = next;
+		if (previous == next || fields.isEmpty())
+			return;
+		ElevationGrid before = previous.getGrid();
+		ElevationGrid after = next.getGrid();
+		if (!before.getLayout().equals(after.getLayout())) {
+			invalidations += fields.size();
+			clear();
+			return;
+		}
+
+		// cells whose elevation differs, packed as x, y pairs
+		int[] changed = new int[64];
+		int count = 0;
+		for (int y = 0; y < after.getHeight(); y++) {
+			for (int x = 0; x < after.getWidth(); x++) {
+				if (before.get(x, y) == after.get(x, y))
+					continue;
+				if (count == changed.length)
+					changed = Arrays.copyOf(changed, count * 2);
+				changed[count++] = x;
+				changed[count++] = y;
+			}
+		}
+
+		Iterator<Map.Entry<Key, CostField>> entries = fields.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<Key, CostField> entry = entries.next();
+			CostField field = entry.getValue();
+			if (reachesAny(field, changed, count)) {
+				bytes -= field.getBytes();
+				entries.remove();
+				invalidations++;
+			} else {
+				entry.setValue(field.onTerrain(next));
+			}
+		}
+	}
+
+	/**
+	 * Whether the field reaches one of the changed cells or a neighbour of one. A
+	 * cell out of reach with no reached neighbour cannot change any cost.
+	 */
+	private static boolean reachesAny(CostField field, int[] changed, int count) {
+		for (int i = 0; i < count; i += 2) {
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dx = -1; dx <= 1; dx++) {
+					if (field.reaches(changed[i] + dx, changed[i + 1] + dy))
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drop every field, keeping the statistics.
+	 */
+	public synchronized void clear() {
+		fields.clear();
+		bytes = 0;
+	}
+
+	public synchronized int size() {
+		return fields.size();
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Share of the lookups answered from the cache, 0 before the first lookup.
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * Fields put that were not kept because they alone exceed the budget.
+	 */
+	public synchronized long getRejections() {
+		return rejections;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return fields.size() + " fields, " + bytes + " of " + memoryBudget + " bytes, hit rate " + getHitRate() + ", "
+				+ evictions + " evicted, " + invalidations + " invalidated, " + rejections + " rejected";
+	}
+}
@@ -0,0 +1,346 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads a grid of integer elevations written one row per line, values
+ * separated by spaces or tabs, by parsing the ASCII digits straight out of
+ * bytes read from a FileChannel.
+ *
+ * The file is split into byte ranges that start and end on line boundaries.
+ * A first parallel pass counts the rows in every range, which gives each range
+ * its starting row index, and a second parallel pass parses the ranges straight
+ * into their rows of the grid. The minimum and maximum elevation are collected
+ * while parsing.
+ *
+ * The rows can also be handed to a RowSink instead of a grid, for converters
+ * that write a map too large to hold in memory straight to a file.
+ */
+public class ElevationFileReader {
+	private static final int BUFFER_SIZE = 1 << 20; // bytes read from the channel at a time
+	private static final long MIN_CHUNK_SIZE = 4L << 20; // smallest byte range worth a task of its own
+
+	private final int rows; // number of rows expected in the file
+	private final int cols; // number of columns expected in the file
+	private final ForkJoinPool pool; // pool the byte ranges are parsed on
+	private int min = Integer.MAX_VALUE; // smallest elevation read
+	private int max = Integer.MIN_VALUE; // largest elevation read
+
+	/**
+	 * Receives the rows of a file, each in an array the reader reuses for the
+	 * next row.
+	 */
+	public interface RowSink {
+		void row(int y, int[] values) throws IOException;
+	}
+
+	public ElevationFileReader(int rows, int cols) {
+		this(rows, cols, ForkJoinPool.commonPool());
+	}
+
+	public ElevationFileReader(int rows, int cols, ForkJoinPool pool) {
+		this.rows = rows;
+		this.cols = cols;
+		this.pool = pool;
+	}
+
+	/**
+	 * Read the rows * cols elevations of the file into the grid and record their
+	 * range on it. Lines holding only whitespace are skipped.
+	 *
+	 * @throws NoSuchElementException if the file does not hold exactly rows rows
+	 * @throws InputMismatchException if a row does not hold exactly cols values or
+	 *                                a token is not an integer
+	 */
+	public void read(String filename, ElevationGrid grid) throws IOException {
+		read(filename, (y, values) -> {
+			for (int x = 0; x < cols; x++)
+				grid.set(grid.index(x, y), values[x]);
+		});
+		grid.setRange(min, max);
+	}
+
+	/**
+	 * Parse the file as read(String, ElevationGrid) does, handing every row to
+	 * the sink instead of storing it. The rows arrive in no particular order and
+	 * from several threads at once, the whole file is checked before this
+	 * returns.
+	 */
+	public void read(String filename, RowSink sink) throws IOException {
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			Chunk[] chunks = split(channel);
+
+			// first pass: count the rows of every chunk to find where each one starts,
+			// a single chunk starts at row 0 and is checked while it is parsed
+			if (chunks.length > 1) {
+				invoke(chunks, chunk -> chunk.countRows(channel));
+				int totalRows = 0;
+				for (Chunk chunk : chunks) {
+					chunk.startRow = totalRows;
+					totalRows += chunk.rowCount;
+				}
+				checkRows(totalRows, filename);
+			}
+
+			// second pass: parse every chunk straight into its rows
+			invoke(chunks, chunk -> chunk.parse(channel, sink, filename));
+			if (chunks.length == 1)
+				checkRows(chunks[0].rowCount, filename);
+			for (Chunk chunk : chunks) {
+				min = Math.min(min, chunk.min);
+				max = Math.max(max, chunk.max);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Parse the file on the calling thread, handing the rows to the sink from
+	 * the first to the last. A row already handed over may be followed by an
+	 * exception for a later one.
+	 */
+	public void readInOrder(String filename, RowSink sink) throws IOException {
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			Chunk chunk = new Chunk(0, channel.size());
+			chunk.parse(channel, sink, filename);
+			checkRows(chunk.rowCount, filename);
+			min = Math.min(min, chunk.min);
+			max = Math.max(max, chunk.max);
+		}
+	}
+
+	public int getMin() {
+		return min;
+	}
+
+	public int getMax() {
+		return max;
+	}
+
+	/**
+	 * Split the file into byte ranges of roughly equal size, each one ending
+	 * right after a line break or at the end of the file.
+	 */
+	private Chunk[] split(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long target = Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4L));
+		int count = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (size + target - 1) / target));
+
+		Chunk[] chunks = new Chunk[count];
+		int used = 0;
+		long start = 0;
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while (start < size || used == 0) {
+			long end = Math.min(size, start + target);
+			// move the end past the next line break
+			while (end < size) {
+				buffer.clear();
+				int length = channel.read(buffer, end);
+				int i = 0;
+				while (i < length && buffer.get(i) != '\n')
+					i++;
+				end += i;
+				if (i < length) {
+					end++;
+					break;
+				}
+			}
+			if (used == chunks.length)
+				chunks = Arrays.copyOf(chunks, used * 2);
+			chunks[used++] = new Chunk(start, end);
+			start = end;
+		}
+
+		return Arrays.copyOf(chunks, used);
+	}
+
+	private void checkRows(int found, String filename) {
+		if (found != rows)
+			throw new NoSuchElementException("Expected " + rows + " rows in " + filename + " but found " + found);
+	}
+
+	private void invoke(Chunk[] chunks, ChunkJob job) {
+		try {
+			pool.invoke(new ChunkAction(chunks, 0, chunks.length, job));
+		} catch (RuntimeException e) {
+			// the pool may rethrow a copy of the task's exception, report the original
+			if (e.getCause() != null && e.getCause().getClass() == e.getClass())
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+
+	private static boolean isWhitespace(int b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+	}
+
+	private interface ChunkJob {
+		void run(Chunk chunk) throws IOException;
+	}
+
+	/**
+	 * Runs a job on a range of chunks, splitting the range in halves until a
+	 * single chunk is left.
+	 */
+	@SuppressWarnings("serial") // never serialized, only forked within one read
+	private static class ChunkAction extends RecursiveAction {
+		private final Chunk[] chunks;
+		private final int from;
+		private final int to;
+		private final ChunkJob job;
+
+		ChunkAction(Chunk[] chunks, int from, int to, ChunkJob job) {
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+			this.job = job;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				try {
+					for (int i = from; i < to; i++)
+						job.run(chunks[i]);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ChunkAction(chunks, from, mid, job), new ChunkAction(chunks, mid, to, job));
+		}
+	}
+
+	/**
+	 * A byte range of the file made of whole lines.
+	 */
+	private class Chunk {
+		final long start; // offset of the first byte
+		final long end; // offset after the last byte
+		int rowCount; // number of non-blank lines in the range
+		int startRow; // grid row of the first non-blank line
+		int min = Integer.MAX_VALUE; // smallest elevation in the range
+		int max = Integer.MIN_VALUE; // largest elevation in the range
+
+		Chunk(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		void countRows(FileChannel channel) throws IOException {
+			byte[] bytes = new byte[BUFFER_SIZE];
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			boolean blank = true;
+			for (long position = start; position < end;) {
+				buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+				int length = channel.read(buffer, position);
+				for (int i = 0; i < length; i++) {
+					int b = bytes[i];
+					if (b == '\n') {
+						if (!blank)
+							rowCount++;
+						blank = true;
+					} else if (!isWhitespace(b)) {
+						blank = false;
+					}
+				}
+				position += length;
+			}
+			if (!blank)
+				rowCount++;
+		}
+
+		void parse(FileChannel channel, RowSink sink, String filename) throws IOException {
+			byte[] bytes = new byte[BUFFER_SIZE];
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			int[] values = new int[cols]; // row being parsed
+
+			int row = startRow;
+			boolean inRow = false; // whether the current line has values
+			int col = 0;
+
+			// parser state carried across buffer refills
+			boolean inNumber = false;
+			boolean negative = false;
+			boolean hasDigits = false;
+			long value = 0;
+
+			for (long position = start; position <= end;) {
+				int length = 0;
+				if (position < end) {
+					buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+					length = channel.read(buffer, position);
+				}
+				// a virtual line break after the range closes the last line
+				boolean last = position + length >= end;
+				for (int i = 0; i <= length; i++) {
+					if (i == length && !last)
+						break;
+					int b = i < length ? bytes[i] : '\n';
+					if (b >= '0' && b <= '9') {
+						value = value * 10 + (b - '0');
+						hasDigits = true;
+						inNumber = true;
+						if (value > (long) Integer.MAX_VALUE + 1)
+							throw new InputMismatchException("Elevation out of int range in row " + row + " of " + filename);
+					} else if (isWhitespace(b) || b == '\n') {
+						if (inNumber) {
+							if (!hasDigits)
+								throw new InputMismatchException("Sign without digits in row " + row + " of " + filename);
+							long signed = negative ? -value : value;
+							if (signed > Integer.MAX_VALUE)
+								throw new InputMismatchException("Elevation out of int range in row " + row + " of " + filename);
+							if (!inRow) {
+								if (row == rows)
+									throw new NoSuchElementException(
+											"Expected " + rows + " rows in " + filename + " but found more");
+								inRow = true;
+							}
+							if (col == cols)
+								throw new InputMismatchException(
+										"Row " + row + " of " + filename + " has more than " + cols + " values");
+							int elevation = (int) signed;
+							values[col++] = elevation;
+							if (elevation < min)
+								min = elevation;
+							if (elevation > max)
+								max = elevation;
+							inNumber = false;
+							negative = false;
+							hasDigits = false;
+							value = 0;
+						}
+						if (b == '\n' && inRow) {
+							if (col != cols)
+								throw new InputMismatchException(
+										"Row " + row + " of " + filename + " has " + col + " values, expected " + cols);
+							sink.row(row++, values);
+							inRow = false;
+							col = 0;
+						}
+					} else if ((b == '-' || b == '+') && !inNumber) {
+						negative = b == '-';
+						inNumber = true;
+					} else {
+						throw new InputMismatchException(
+								"Unexpected character '" + (char) b + "' in row " + row + " of " + filename);
+					}
+				}
+				position += length;
+				if (last)
+					break;
+			}
+			rowCount = row - startRow;
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ * Elevation raster kept in a single flat array, optionally surrounded by a
+ * border of padding cells holding a sentinel value. Cells are addressed by
+ * their index in that array, as given by the GridLayout of the grid, so the
+ * search state of IMECEPathFinder can be kept in flat arrays using the same
+ * cell ids and the same memory order.
+ */
+public abstract class ElevationGrid {
+	protected final GridLayout layout; // order of the cells in memory
+	protected final int width; // number of columns, without padding
+	protected final int height; // number of rows, without padding
+	protected final int padding; // border cells on every side
+	private int min = Integer.MAX_VALUE; // smallest elevation in the grid
+	private int max = Integer.MIN_VALUE; // largest elevation in the grid
+
+	protected ElevationGrid(int width, int height, int padding) {
+		this(new RowMajorLayout(width, height, padding));
+	}
+
+	protected ElevationGrid(GridLayout layout) {
+		this.layout = layout;
+		this.width = layout.getWidth();
+		this.height = layout.getHeight();
+		this.padding = layout.getPadding();
+	}
+
+	/**
+	 * Bytes per cell needed to hold every elevation from min to max: 1 or 2 when
+	 * the offsets from min fit below the top code kept for padding, 4 otherwise.
+	 */
+	public static int elementWidthFor(int min, int max) {
+		long range = (long) max - min;
+		if (range >= 0 && range <= ByteElevationGrid.MAX_RANGE)
+			return 1;
+		if (range >= 0 && range <= ShortElevationGrid.MAX_RANGE)
+			return 2;
+		return 4;
+	}
+
+	/**
+	 * Create the most compact heap grid able to hold every elevation from min to
+	 * max: bytes or shorts storing the offset from min when the range allows, ints
+	 * otherwise. Padding cells read as a value above max, or Integer.MAX_VALUE for
+	 * int storage.
+	 */
+	public static ElevationGrid create(int width, int height, int padding, int min, int max) {
+		return create(width, height, padding, min, max, false);
+	}
+
+	/**
+	 * Create the most compact grid able to hold every elevation from min to max,
+	 * on the heap or in direct buffers outside of it.
+	 */
+	public static ElevationGrid create(int width, int height, int padding, int min, int max, boolean offHeap) {
+		return create(new RowMajorLayout(width, height, padding), min, max, offHeap);
+	}
+
+	/**
+	 * Create the most compact grid able to hold every elevation from min to max,
+	 * with its cells in the given layout.
+	 */
+	public static ElevationGrid create(GridLayout layout, int min, int max, boolean offHeap) {
+		int elementWidth = elementWidthFor(min, max);
+		ElevationGrid grid;
+		if (offHeap)
+			grid = new OffHeapElevationGrid(layout, elementWidth, min);
+		else if (elementWidth == 1)
+			grid = new ByteElevationGrid(layout, min);
+		else if (elementWidth == 2)
+			grid = new ShortElevationGrid(layout, min);
+		else
+			grid = new IntElevationGrid(layout, Integer.MAX_VALUE);
+		grid.setRange(min, max);
+		return grid;
+	}
+
+	/**
+	 * Copy the grid into the most compact heap storage its elevation range allows.
+	 * Returns the grid itself if it is already as compact as it can be.
+	 */
+	public static ElevationGrid compact(ElevationGrid source) {
+		return compact(source, false);
+	}
+
+	/**
+	 * Copy the grid into the most compact storage its elevation range allows, in
+	 * heap arrays or direct buffers. Returns the grid itself if it already is in
+	 * that kind of storage and as compact as it can be.
+	 */
+	public static ElevationGrid compact(ElevationGrid source, boolean offHeap) {
+		return compact(source, offHeap, source.layout);
+	}
+
+	/**
+	 * Copy the grid into the most compact storage its elevation range allows,
+	 * with its cells rearranged into the given layout. Returns the grid itself if
+	 * nothing would change.
+	 */
+	public static ElevationGrid compact(ElevationGrid source, boolean offHeap, GridLayout layout) {
+		boolean sameStorage = offHeap ? source instanceof OffHeapElevationGrid
+				: source instanceof IntElevationGrid || source instanceof ShortElevationGrid
+						|| source instanceof ByteElevationGrid;
+		if (sameStorage && source.layout.equals(layout)
+				&& source.getBytesPerCell() <= elementWidthFor(source.min, source.max))
+			return source;
+		if (layout.getWidth() != source.width || layout.getHeight() != source.height)
+			throw new IllegalArgumentException("Layout " + layout + " does not match a grid of " + source.width + "x"
+					+ source.height);
+		ElevationGrid grid = create(layout, source.min, source.max, offHeap);
+		for (int y = 0; y < source.height; y++) {
+			for (int x = 0; x < source.width; x++) {
+				grid.set(grid.index(x, y), source.get(x, y));
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * Elevation stored at the given cell id.
+	 */
+	public abstract int get(int index);
+
+	/**
+	 * Store an elevation at the given cell id.
+	 */
+	public abstract void set(int index, int value);
+
+	/**
+	 * Bytes of storage used per cell.
+	 */
+	public abstract int getBytesPerCell();
+
+	public int get(int x, int y) {
+		return get(index(x, y));
+	}
+
+	/**
+	 * Cell id of the column x and row y. Padding cells are reached with
+	 * coordinates from -padding to width + padding - 1.
+	 */
+	public int index(int x, int y) {
+		return layout.index(x, y);
+	}
+
+	public int x(int index) {
+		return layout.x(index);
+	}
+
+	public int y(int index) {
+		return layout.y(index);
+	}
+
+	/**
+	 * Number of cell ids, padding included, the length of any array indexed by them.
+	 */
+	public int size() {
+		return layout.size();
+	}
+
+	/**
+	 * Constant id offsets of the neighbours in the directions (dx[i], dy[i]), or
+	 * null if the layout or the lack of padding does not allow them.
+	 */
+	public int[] neighbourOffsets(int[] dx, int[] dy) {
+		return layout.neighbourOffsets(dx, dy);
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getPadding() {
+		return padding;
+	}
+
+	public GridLayout getLayout() {
+		return layout;
+	}
+
+	public int getMin() {
+		return min;
+	}
+
+	public int getMax() {
+		return max;
+	}
+
+	/**
+	 * Record the elevation range, as observed while the grid was loaded.
+	 */
+	public void setRange(int min, int max) {
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Copy the elevations, without padding, into a new int[height][width].
+	 */
+	public int[][] toArray() {
+		int[][] rows = new int[height][width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				rows[y][x] = get(x, y);
+			}
+		}
+		return rows;
+	}
+}
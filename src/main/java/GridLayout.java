@@ -0,0 +1,107 @@
+/**
+ * Maps the cells of a width x height grid surrounded by padding cells to the
+ * int ids that index its storage and every search array over it. Padding
+ * cells are reached with coordinates from -padding to width + padding - 1.
+ *
+ * Layouts that round the padded grid up to whole blocks also hand out ids for
+ * cells outside of it. Those ids are counted by size() but never returned by
+ * index() for a cell of the padded grid.
+ */
+public abstract class GridLayout {
+	protected final int width; // number of columns, without padding
+	protected final int height; // number of rows, without padding
+	protected final int padding; // border cells on every side
+
+	protected GridLayout(int width, int height, int padding) {
+		if (width < 0 || height < 0 || padding < 0)
+			throw new IllegalArgumentException("Invalid grid of " + width + "x" + height + " with padding " + padding);
+		this.width = width;
+		this.height = height;
+		this.padding = padding;
+	}
+
+	/**
+	 * Layout of the given cell order, with the default block size for BLOCKED.
+	 */
+	public static GridLayout of(CellOrder order, int width, int height, int padding) {
+		if (order == CellOrder.Z_ORDER)
+			return new MortonLayout(width, height, padding);
+		if (order == CellOrder.BLOCKED)
+			return new BlockedLayout(width, height, padding, BlockedLayout.DEFAULT_BLOCK_SIZE);
+		return new RowMajorLayout(width, height, padding);
+	}
+
+	/**
+	 * Cell id of the column x and row y.
+	 */
+	public abstract int index(int x, int y);
+
+	/**
+	 * Column of the cell id.
+	 */
+	public abstract int x(int index);
+
+	/**
+	 * Row of the cell id.
+	 */
+	public abstract int y(int index);
+
+	/**
+	 * Number of cell ids, the length of any array indexed by them.
+	 */
+	public abstract int size();
+
+	public abstract CellOrder getOrder();
+
+	/**
+	 * Id differences between a cell and its neighbours in the directions
+	 * (dx[i], dy[i]), when they are the same for every cell of the grid, or null
+	 * if the layout has no such constant offsets. Needs at least one cell of
+	 * padding, so that the neighbours of every grid cell have ids.
+	 */
+	public int[] neighbourOffsets(int[] dx, int[] dy) {
+		return null;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getPadding() {
+		return padding;
+	}
+
+	/**
+	 * Check that a layout of the given number of ids can be addressed by int ids.
+	 */
+	protected int checkSize(long cells) {
+		if (cells > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Grid of " + width + "x" + height + " with padding " + padding + " in "
+					+ getOrder() + " order has more cells than int cell ids can address");
+		return (int) cells;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (o == null || getClass() != o.getClass())
+			return false;
+		GridLayout other = (GridLayout) o;
+		return width == other.width && height == other.height && padding == other.padding && size() == other.size();
+	}
+
+	@Override
+	public int hashCode() {
+		return ((getOrder().hashCode() * 31 + width) * 31 + height) * 31 + padding;
+	}
+
+	@Override
+	public String toString() {
+		return getOrder() + " " + width + "x" + height + " padding " + padding;
+	}
+}
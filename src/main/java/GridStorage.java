@@ -0,0 +1,22 @@
+/**
+ * Where IMECEPathFinder keeps the elevation grid.
+ */
+public enum GridStorage {
+    /**
+     * Text grids on the heap, binary grids memory-mapped, tile files read on
+     * demand through a bounded tile cache.
+     */
+    AUTO,
+
+    /**
+     * On the Java heap, in the most compact array the elevation range allows.
+     * Binary grids and tile files are copied in whole.
+     */
+    HEAP,
+
+    /**
+     * Outside the heap: binary grids are memory-mapped, text grids and tile
+     * files are loaded into direct buffers.
+     */
+    OFF_HEAP
+}
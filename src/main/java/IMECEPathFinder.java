@@ -2,86 +2,255 @@ import java.io.*;
 import java.util.*;
 import java.awt.*;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
-public class IMECEPathFinder {
-	public int[][] grid; // 2D array to store the grid data
-	private int[][] scaledGrid; // 2D array to store the scaled grid data
-	public int height; // Number of rows in the grid
-	public int width; // Number of columns in the grid
-	public int maxFlyingHeight; // Maximum flying height
-	public double fuelCostPerUnit; // Fuel cost per unit distance
-	public double climbingCostPerUnit; // Climbing cost per unit height difference
+public class IMECEPathFinder implements Closeable {
+	public static final long FIXED_POINT_SCALE = 1L << 20; // fixed-point units per unit of cost
+	public static final int SUGGESTED_EDGE_COST_SWEEPS = 4; // grids' worth of steps a table pays for itself after
+
+	// the 8 movement directions, in the order neighbours are relaxed, straight ones first
+	private static final int[] DX = { -1, 1, 0, 0, -1, -1, 1, 1 };
+	private static final int[] DY = { 0, 0, -1, 1, -1, 1, -1, 1 };
+	private static final double[] STEP_LENGTH = { 1, 1, 1, 1, Math.sqrt(2), Math.sqrt(2), Math.sqrt(2), Math.sqrt(2) };
+	private static final int[] OPPOSITE = { 1, 0, 3, 2, 7, 6, 5, 4 }; // direction of the reversed step
+
+	// grid in the order chosen at load time and the data derived from it, replaced
+	// whole when the terrain changes
+	private final AtomicReference<TerrainSnapshot> terrain = new AtomicReference<>();
+	private volatile GridView gridView; // int[][] copy of the grid, materialized by getGrid()
+	// step cost tables and relaxation counts of the current grid, replaced whole when the terrain changes
+	private final AtomicReference<EdgeCosts> edgeCosts = new AtomicReference<>(new EdgeCosts(null));
+	private volatile int edgeCostSweeps = Integer.MAX_VALUE; // grids' worth of steps relaxed before tabling
+	private final ThreadLocal<SearchWorkspace> workspaces = new ThreadLocal<>(); // search arrays kept per thread
+	// cost fields recently computed by getCostField
+	private volatile CostFieldCache costFieldCache = new CostFieldCache(CostFieldCache.DEFAULT_MEMORY_BUDGET);
+	private volatile QueryParameters parameters; // flying limit and costs of searches given no QueryParameters
+	private final Closeable openedGrid; // tile file opened by the file constructor, null if none
 
 	public IMECEPathFinder(String filename, int rows, int cols, int maxFlyingHeight, double fuelCostPerUnit,
 			double climbingCostPerUnit) {
-		// Initialize the grid and scaledGrid arrays with the specified number of rows
-		// and columns
-		grid = new int[rows][cols];
-		scaledGrid = new int[rows][cols];
+		this(filename, rows, cols, maxFlyingHeight, fuelCostPerUnit, climbingCostPerUnit, GridStorage.AUTO);
+	}
 
-		// Set the height and width of the grid
-		this.height = rows;
-		this.width = cols;
+	public IMECEPathFinder(String filename, int rows, int cols, int maxFlyingHeight, double fuelCostPerUnit,
+			double climbingCostPerUnit, GridStorage storage) {
+		this(filename, rows, cols, maxFlyingHeight, fuelCostPerUnit, climbingCostPerUnit, storage, CellOrder.ROW_MAJOR);
+	}
 
+	/**
+	 * Load the grid with its cells, and therefore the cost and parent arrays of
+	 * every search, in the given memory order. Binary grids are stored row-major
+	 * and get copied when another order is asked for. A tile file read on demand
+	 * stays open until close is called, one copied into other storage is closed
+	 * once copied. Only a text grid gets its grayscaleMap.dat written, see
+	 * saveGrayscaleMap.
+	 * 
+	 * @throws UncheckedIOException if the file cannot be read
+	 */
+	public IMECEPathFinder(String filename, int rows, int cols, int maxFlyingHeight, double fuelCostPerUnit,
+			double climbingCostPerUnit, GridStorage storage, CellOrder order) {
 		// Set the maximum flying height, fuel cost per unit, and climbing cost per unit
-		this.maxFlyingHeight = maxFlyingHeight;
-		this.fuelCostPerUnit = fuelCostPerUnit;
-		this.climbingCostPerUnit = climbingCostPerUnit;
+		this.parameters = new QueryParameters(maxFlyingHeight, fuelCostPerUnit, climbingCostPerUnit);
 
+		TiledElevationGrid opened = null;
 		try {
-			// Create a Scanner object to read from the file
-			Scanner scanner = new Scanner(new File(filename));
+			ElevationGrid elevationGrid;
+			if (BinaryGridFile.isBinaryGrid(filename)) {
+				// Map the binary grid, its header already holds the min and max elevation
+				BinaryGridFile file = BinaryGridFile.open(filename);
+				if (file.getRows() != rows || file.getCols() != cols)
+					throw new InputMismatchException("Expected a " + rows + "x" + cols + " grid in " + filename
+							+ " but found " + file.getRows() + "x" + file.getCols());
+				elevationGrid = file.map();
 
-			// Read the grid values from the file and store them in the grid array
-			for (int i = 0; i < rows; i++) {
-				for (int j = 0; j < cols; j++) {
-					grid[i][j] = scanner.nextInt();
+				// Copy the mapped cells onto the heap, or into another order, only when asked to
+				if (storage == GridStorage.HEAP || order != CellOrder.ROW_MAJOR)
+					elevationGrid = ElevationGrid.compact(elevationGrid, storage != GridStorage.HEAP,
+							GridLayout.of(order, cols, rows, file.getPadding()));
+			} else if (TiledElevationGrid.isTiledGrid(filename)) {
+				// Read tiles on demand through a bounded cache, unless asked to load them all
+				TiledElevationGrid tiled = TiledElevationGrid.open(filename, TiledElevationGrid.DEFAULT_MEMORY_BUDGET, 1,
+						order);
+				if (tiled.getWidth() != cols || tiled.getHeight() != rows) {
+					tiled.close();
+					throw new InputMismatchException("Expected a " + rows + "x" + cols + " grid in " + filename
+							+ " but found " + tiled.getHeight() + "x" + tiled.getWidth());
 				}
-			}
+				if (storage != GridStorage.AUTO) {
+					try {
+						elevationGrid = ElevationGrid.compact(tiled, storage == GridStorage.OFF_HEAP);
+					} finally {
+						tiled.close();
+					}
+				} else {
+					elevationGrid = tiled;
+					opened = tiled;
+				}
+			} else {
+				// Parse the grid values straight from the file bytes, collecting the min and
+				// max elevation on the way, then move them to the most compact storage
+				// their range allows
+				boolean offHeap = storage == GridStorage.OFF_HEAP;
+				GridLayout layout = GridLayout.of(order, cols, rows, 1);
+				ElevationGrid parsed = offHeap ? new OffHeapElevationGrid(layout, 4, 0)
+						: new IntElevationGrid(layout, Integer.MAX_VALUE);
+				new ElevationFileReader(rows, cols).read(filename, parsed);
+				elevationGrid = ElevationGrid.compact(parsed, offHeap);
 
-			// Close the scanner
-			scanner.close();
+				// Save a copy of the original grid by calling the saveGrid method
+				saveGrid(elevationGrid, elevationGrid.getMin(), elevationGrid.getMax());
+			}
 
-			// Save a copy of the original grid by calling the saveGrid method
-			saveGrid();
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+			terrain.set(new TerrainSnapshot(elevationGrid));
+		} catch (IOException e) {
+			// without a grid every later call would fail, so fail here instead
+			throw new UncheckedIOException("Cannot read the grid in " + filename, e);
 		}
+		this.openedGrid = opened;
 	}
 
-	private void saveGrid() {
+	/**
+	 * Create a path finder on an already loaded grid, for instance a tiled grid
+	 * with a custom memory budget. Unlike the file based constructor, no
+	 * grayscaleMap.dat is written. The grid stays owned by the caller, who closes
+	 * a tiled grid once no search runs on it.
+	 */
+	public IMECEPathFinder(ElevationGrid elevationGrid, int maxFlyingHeight, double fuelCostPerUnit,
+			double climbingCostPerUnit) {
+		this(new TerrainSnapshot(elevationGrid),
+				new QueryParameters(maxFlyingHeight, fuelCostPerUnit, climbingCostPerUnit));
+	}
 
-		int min = Integer.MAX_VALUE;
-		int max = Integer.MIN_VALUE;
-		for (int i = 0; i < grid.length; i++) {
-			for (int j = 0; j < grid[0].length; j++) {
-				if (grid[i][j] < min) {
-					min = grid[i][j];
-				}
-				if (grid[i][j] > max) {
-					max = grid[i][j];
-				}
-			}
-		}
-		// find the min and max values in the grid
+	/**
+	 * Create a path finder on a terrain snapshot, which may be shared with other
+	 * path finders. The parameters are those of searches given none of their own.
+	 */
+	public IMECEPathFinder(TerrainSnapshot terrain, QueryParameters parameters) {
+		this.terrain.set(terrain);
+		this.parameters = parameters;
+		this.openedGrid = null;
+	}
 
-		for (int i = 0; i < grid.length; i++) {
-			for (int j = 0; j < grid[0].length; j++) {
-				scaledGrid[i][j] = (int) ((grid[i][j] - min) * 255.0 / (max - min));
-			}
-		}
-		// scale the grid values to 0-255 using the min and max values
+	/**
+	 * Close the tile file the file constructor opened, if it opened one, after
+	 * which searches on its grid fail. Grids given to the other constructors or
+	 * published belong to the caller and are left open.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (openedGrid != null)
+			openedGrid.close();
+	}
+
+	/**
+	 * The storage the elevations of the current terrain are read from.
+	 */
+	public ElevationGrid getElevationGrid() {
+		return terrain.get().getGrid();
+	}
+
+	/**
+	 * Number of rows of the current terrain.
+	 */
+	public int getHeight() {
+		return terrain.get().getHeight();
+	}
+
+	/**
+	 * Number of columns of the current terrain.
+	 */
+	public int getWidth() {
+		return terrain.get().getWidth();
+	}
+
+	/**
+	 * The terrain searches started now run on. A search reads the snapshot once,
+	 * so it is not affected by terrain published while it runs.
+	 */
+	public TerrainSnapshot getTerrain() {
+		return terrain.get();
+	}
+
+	/**
+	 * Replace the terrain, for searches started from now on. The new terrain may
+	 * have another size. The grid replaced is not closed, searches may still be
+	 * running on it.
+	 */
+	public void publish(TerrainSnapshot snapshot) {
+		terrain.set(snapshot);
+		costFieldCache.rebase(terrain.get());
+	}
+
+	/**
+	 * Change elevations of the terrain by publishing a copy with the editor's
+	 * changes, see TerrainSnapshot.update. Updates racing each other are applied
+	 * one after the other, retrying the editor on the newer terrain, so the
+	 * editor may run more than once and must do nothing but set elevations.
+	 * 
+	 * @return the snapshot published
+	 * @throws UnsupportedOperationException if the terrain is a tiled grid
+	 */
+	public TerrainSnapshot updateTerrain(Consumer<ElevationGrid> editor) {
+		TerrainSnapshot published = terrain.updateAndGet(snapshot -> snapshot.update(editor));
+		costFieldCache.rebase(terrain.get());
+		return published;
+	}
+
+	/**
+	 * The parameters of searches given none of their own.
+	 */
+	public QueryParameters getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Replace the parameters of searches given none of their own, for searches
+	 * started from now on. A search reads them once, so it never mixes old and
+	 * new values.
+	 */
+	public void setParameters(QueryParameters parameters) {
+		if (parameters == null)
+			throw new IllegalArgumentException("Query parameters must not be null");
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Write grayscaleMap.dat, the grid scaled to 0-255 as text, as loading a text
+	 * grid does. Binary and tiled grids are not written on load: their text
+	 * raster reads every cell and can be far larger than the file they came
+	 * from.
+	 */
+	public void saveGrayscaleMap() {
+		ElevationGrid elevationGrid = getElevationGrid();
+		saveGrid(elevationGrid, elevationGrid.getMin(), elevationGrid.getMax());
+	}
+
+	private static void saveGrid(ElevationGrid elevationGrid, int min, int max) {
+		int height = elevationGrid.getHeight();
+		int width = elevationGrid.getWidth();
+		// scale the grid values to 0-255 using the min and max values while writing
+		// them, so no scaled copy of the grid is kept in memory
 		try {
 			PrintWriter writer = new PrintWriter("grayscaleMap.dat");
-			for (int i = 0; i < scaledGrid.length; i++) {
-				for (int j = 0; j < scaledGrid[0].length; j++) {
-					if (j != scaledGrid[0].length - 1)
-						writer.print(scaledGrid[i][j] + " ");
+			for (int i = 0; i < height; i++) {
+				for (int j = 0; j < width; j++) {
+					int scaled = (int) ((elevationGrid.get(j, i) - min) * 255.0 / (max - min));
+					if (j != width - 1)
+						writer.print(scaled + " ");
 					else
-						writer.print(scaledGrid[i][j]);
+						writer.print(scaled);
 				}
-				if (i < scaledGrid.length - 1)
+				if (i < height - 1)
 					writer.println();
 			}
 			writer.close();
@@ -92,18 +261,52 @@ public class IMECEPathFinder {
 
 	}
 
+	/**
+	 * Returns the elevations as an int[][] indexed [row][column]. The array is a
+	 * copy of the grid storage, materialized on first use for callers that still
+	 * expect the old public grid field.
+	 */
+	public int[][] getGrid() {
+		TerrainSnapshot current = terrain.get();
+		GridView view = gridView;
+		if (view == null || view.source != current) {
+			view = new GridView(current, current.getGrid().toArray());
+			gridView = view;
+		}
+		return view.rows;
+	}
+
+	/**
+	 * An int[][] copy of the grid together with the snapshot it was copied from,
+	 * replaced as a whole so that readers never pair a copy with another
+	 * snapshot.
+	 */
+	private static class GridView {
+		final TerrainSnapshot source; // snapshot the rows were copied from
+		final int[][] rows; // elevations indexed [row][column]
+
+		GridView(TerrainSnapshot source, int[][] rows) {
+			this.source = source;
+			this.rows = rows;
+		}
+	}
+
 	/**
 	 * Draws the grid using the given Graphics object.
 	 * Colors should be grayscale values 0-255, scaled based on min/max elevation
 	 * values in the grid
 	 */
 	public void drawGrayscaleMap(Graphics g) {
+		ElevationGrid elevationGrid = getElevationGrid();
+		int height = elevationGrid.getHeight();
+		int width = elevationGrid.getWidth();
+
 		// Find the minimum and maximum elevation values in the grid
 		int minElevation = Integer.MAX_VALUE;
 		int maxElevation = Integer.MIN_VALUE;
-		for (int i = 0; i < grid.length; i++) {
-			for (int j = 0; j < grid[0].length; j++) {
-				int elevation = grid[i][j];
+		for (int i = 0; i < height; i++) {
+			for (int j = 0; j < width; j++) {
+				int elevation = elevationGrid.get(j, i);
 				if (elevation < minElevation) {
 					minElevation = elevation;
 				}
@@ -114,9 +317,9 @@ public class IMECEPathFinder {
 		}
 
 		// Draw the grid using grayscale colors based on the elevation values
-		for (int i = 0; i < grid.length; i++) {
-			for (int j = 0; j < grid[0].length; j++) {
-				int elevation = grid[i][j];
+		for (int i = 0; i < height; i++) {
+			for (int j = 0; j < width; j++) {
+				int elevation = elevationGrid.get(j, i);
 				int grayscale = mapToGrayscale(elevation, minElevation, maxElevation);
 				g.setColor(new Color(grayscale, grayscale, grayscale));
 				g.fillRect(j, i, 1, 1);
@@ -139,15 +342,16 @@ public class IMECEPathFinder {
 		return grayscale;
 	}
 
-	private double calculateCost(Point p1, Point p2) {
+	private static double calculateCost(ElevationGrid elevationGrid, QueryParameters parameters, int x1, int y1,
+			int x2, int y2) {
 		// Calculate the horizontal and vertical distance between the two points
-		int dx = p2.x - p1.x;
-		int dy = p2.y - p1.y;
+		int dx = x2 - x1;
+		int dy = y2 - y1;
 		double dist = Math.sqrt(dx * dx + dy * dy);
 
 		// Get the current height and neighbor height from the grid
-		int currentHeight = grid[p1.y][p1.x];
-		int neighborHeight = grid[p2.y][p2.x];
+		int currentHeight = elevationGrid.get(x1, y1);
+		int neighborHeight = elevationGrid.get(x2, y2);
 
 		// Calculate the height impact based on the difference between the current and
 		// neighbor heights
@@ -155,7 +359,317 @@ public class IMECEPathFinder {
 
 		// Calculate the cost as the distance multiplied by the fuel cost per unit plus
 		// the climbing cost per unit multiplied by the height impact
-		return (dist * fuelCostPerUnit) + (climbingCostPerUnit * heightImpact);
+		return (dist * parameters.getFuelCostPerUnit()) + (parameters.getClimbingCostPerUnit() * heightImpact);
+	}
+
+	/**
+	 * The cells a search may enter under the current maxFlyingHeight. The masks
+	 * are cached by the terrain, and the mask of a new maxFlyingHeight is derived
+	 * from a cached one rather than rebuilt from the elevations.
+	 */
+	public PassabilityMask getPassability() {
+		return getTerrain().getPassability(parameters.getMaxFlyingHeight());
+	}
+
+	/**
+	 * Compute the costs of every step of the grid now, for the current
+	 * fuelCostPerUnit and climbingCostPerUnit, instead of waiting for the searches
+	 * to relax enough steps. The table is kept next to those of other cost
+	 * parameters as long as they fit in a quarter of the maximum heap. See
+	 * EdgeCostTable for the memory it takes.
+	 */
+	public EdgeCostTable precomputeEdgeCosts() {
+		return precomputeEdgeCosts(getElevationGrid(), getParameters());
+	}
+
+	private EdgeCostTable precomputeEdgeCosts(ElevationGrid grid, QueryParameters parameters) {
+		EdgeCostTable table = EdgeCostTable.build(grid, DX, DY, STEP_LENGTH, parameters::stepCost,
+				parameters.getFuelCostPerUnit(), parameters.getClimbingCostPerUnit());
+		EdgeCosts state = edgeCostsOf(grid);
+		if (state != null)
+			state.add(table);
+		return table;
+	}
+
+	/**
+	 * The step cost table kept for the cost parameters on the current terrain, or
+	 * null if none was built.
+	 */
+	public EdgeCostTable getEdgeCosts(QueryParameters parameters) {
+		EdgeCosts state = edgeCosts.get();
+		return state.grid == getElevationGrid() ? state.tableFor(parameters) : null;
+	}
+
+	/**
+	 * Number of times the steps of the whole grid are relaxed by searches with
+	 * the same fuelCostPerUnit and climbingCostPerUnit before their costs are
+	 * precomputed. Building the table costs about as much as relaxing every step
+	 * once, so many short searches count for as much as one crossing the map. 0
+	 * tables the costs on the first search. The default, Integer.MAX_VALUE,
+	 * never does it automatically: a table takes 64 bytes per cell on top of the
+	 * cost field cache and the search workspaces, for about 9% faster searches.
+	 * SUGGESTED_EDGE_COST_SWEEPS turns it on where that memory is to spare.
+	 */
+	public void setEdgeCostSweeps(int sweeps) {
+		if (sweeps < 0)
+			throw new IllegalArgumentException("Negative number of sweeps: " + sweeps);
+		edgeCostSweeps = sweeps;
+	}
+
+	/**
+	 * Cost parameters the steps relaxed by searches are counted for.
+	 */
+	private static class CostKey {
+		final double fuelCostPerUnit;
+		final double climbingCostPerUnit;
+
+		CostKey(double fuelCostPerUnit, double climbingCostPerUnit) {
+			this.fuelCostPerUnit = fuelCostPerUnit;
+			this.climbingCostPerUnit = climbingCostPerUnit;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (o == null || getClass() != o.getClass())
+				return false;
+			CostKey other = (CostKey) o;
+			return Double.compare(fuelCostPerUnit, other.fuelCostPerUnit) == 0
+					&& Double.compare(climbingCostPerUnit, other.climbingCostPerUnit) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return Double.hashCode(fuelCostPerUnit) * 31 + Double.hashCode(climbingCostPerUnit);
+		}
+	}
+
+	/**
+	 * The step cost tables and relaxation counts of one grid. The tables are
+	 * read without locking, the lock is only taken to publish a new one.
+	 */
+	private static class EdgeCosts {
+		final ElevationGrid grid; // grid the tables and counts belong to
+		final ConcurrentHashMap<CostKey, AtomicLong> relaxations = new ConcurrentHashMap<>(); // steps relaxed per costs
+		final Set<CostKey> building = ConcurrentHashMap.newKeySet(); // cost parameters whose table is built or kept
+		volatile EdgeCostTable[] tables = {}; // one table per cost parameters
+
+		EdgeCosts(ElevationGrid grid) {
+			this.grid = grid;
+		}
+
+		EdgeCostTable tableFor(QueryParameters parameters) {
+			for (EdgeCostTable table : tables) {
+				if (table.matches(grid, parameters.getFuelCostPerUnit(), parameters.getClimbingCostPerUnit()))
+					return table;
+			}
+			return null;
+		}
+
+		long relaxed(CostKey key) {
+			AtomicLong count = relaxations.get(key);
+			return count == null ? 0 : count.get();
+		}
+
+		/**
+		 * Publish the table first, then the others as long as they fit in the budget.
+		 */
+		synchronized void add(EdgeCostTable table) {
+			building.add(new CostKey(table.getFuelCostPerUnit(), table.getClimbingCostPerUnit()));
+			List<EdgeCostTable> kept = new ArrayList<>();
+			kept.add(table);
+			long bytes = EdgeCostTable.bytesFor(grid);
+			for (EdgeCostTable other : tables) {
+				if (other.matches(grid, table.getFuelCostPerUnit(), table.getClimbingCostPerUnit()))
+					continue;
+				bytes += EdgeCostTable.bytesFor(grid);
+				if (bytes <= edgeCostBudget())
+					kept.add(other);
+			}
+			tables = kept.toArray(new EdgeCostTable[0]);
+		}
+	}
+
+	/**
+	 * The step cost table a search on the grid with the parameters should use, or
+	 * null to compute the costs on the fly. No lock is taken. A table is built
+	 * once the searches with the same grid and cost parameters have relaxed the
+	 * set number of sweeps of steps, if it fits next to the tables of other cost
+	 * parameters in a quarter of the maximum heap. The search that finds the
+	 * count reached builds it, the others go on without a table meanwhile. Tables
+	 * are kept until the terrain changes, so searches alternating between cost
+	 * parameters each keep theirs.
+	 */
+	private EdgeCostTable edgeCostsForSearch(ElevationGrid grid, QueryParameters parameters) {
+		EdgeCosts state = edgeCosts.get();
+		if (state.grid == grid) {
+			EdgeCostTable table = state.tableFor(parameters);
+			if (table != null)
+				return table;
+		}
+		if (!tableable(grid) || (state = edgeCostsOf(grid)) == null)
+			return null;
+
+		CostKey key = new CostKey(parameters.getFuelCostPerUnit(), parameters.getClimbingCostPerUnit());
+		if (state.relaxed(key) < (long) edgeCostSweeps * EdgeCostTable.DIRECTIONS * grid.size()
+				|| (state.tables.length + 1) * EdgeCostTable.bytesFor(grid) > edgeCostBudget()
+				|| !state.building.add(key))
+			return null;
+		return precomputeEdgeCosts(grid, parameters);
+	}
+
+	/**
+	 * Add the steps relaxed by a search that computed its costs on the fly to
+	 * those counted towards the table of its grid and cost parameters.
+	 */
+	private void countRelaxations(ElevationGrid grid, QueryParameters parameters, long expanded) {
+		EdgeCosts state;
+		if (!tableable(grid) || (state = edgeCostsOf(grid)) == null)
+			return;
+		CostKey key = new CostKey(parameters.getFuelCostPerUnit(), parameters.getClimbingCostPerUnit());
+		AtomicLong count = state.relaxations.get(key);
+		if (count == null)
+			count = state.relaxations.computeIfAbsent(key, k -> new AtomicLong());
+		count.addAndGet(expanded * EdgeCostTable.DIRECTIONS);
+	}
+
+	/**
+	 * Whether a table for the grid can be built at all.
+	 */
+	private static boolean tableable(ElevationGrid grid) {
+		return EdgeCostTable.fits(grid) && EdgeCostTable.bytesFor(grid) <= edgeCostBudget();
+	}
+
+	/**
+	 * Bytes all step cost tables may take together.
+	 */
+	private static long edgeCostBudget() {
+		return Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	/**
+	 * The tables and counts of the grid, started afresh when the grid is that of
+	 * a terrain published since, which drops those of the previous grid. Null for
+	 * a grid that is no longer current, whose searches are not counted.
+	 */
+	private EdgeCosts edgeCostsOf(ElevationGrid grid) {
+		while (true) {
+			EdgeCosts state = edgeCosts.get();
+			if (state.grid == grid)
+				return state;
+			if (grid != getElevationGrid())
+				return null;
+			EdgeCosts fresh = new EdgeCosts(grid);
+			if (edgeCosts.compareAndSet(state, fresh))
+				return fresh;
+		}
+	}
+
+	/**
+	 * The connected components of the cells a search may enter under the current
+	 * maxFlyingHeight, labelled once per flying height by the terrain.
+	 */
+	public ComponentLabels getComponents() {
+		return getTerrain().getComponents(parameters.getMaxFlyingHeight());
+	}
+
+	/**
+	 * Whether any path leads from start to end under the current maxFlyingHeight.
+	 * Like the searches, the start may be left even if it is too high, then the
+	 * end must lie in the component of one of its neighbours.
+	 */
+	public boolean isReachable(Point start, Point end) {
+		TerrainSnapshot snapshot = getTerrain();
+		checkCell(snapshot.getGrid(), start);
+		checkCell(snapshot.getGrid(), end);
+		return isReachable(snapshot.getGrid(), snapshot.getComponents(parameters.getMaxFlyingHeight()), start, end);
+	}
+
+	private static boolean isReachable(ElevationGrid grid, ComponentLabels labels, Point start, Point end) {
+		int startId = grid.index(start.x, start.y);
+		int endId = grid.index(end.x, end.y);
+		if (startId == endId)
+			return true;
+		if (labels.label(endId) < 0)
+			return false;
+		if (labels.label(startId) >= 0)
+			return labels.connected(startId, endId);
+		for (int d = 0; d < 8; d++) {
+			int x = start.x + DX[d];
+			int y = start.y + DY[d];
+			if (grid.contains(x, y) && labels.connected(grid.index(x, y), endId))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reject a point that is not a cell of the grid. Cell ids are not bounds
+	 * checked, a point outside the grid would resolve to a padding cell or wrap
+	 * into the neighbouring row.
+	 * 
+	 * @throws IllegalArgumentException if the point lies outside the grid
+	 */
+	static void checkCell(ElevationGrid grid, Point point) {
+		if (!grid.contains(point.x, point.y))
+			throw new IllegalArgumentException(
+					"Point " + point + " lies outside the " + grid.getWidth() + "x" + grid.getHeight() + " grid");
+	}
+
+	/**
+	 * Cell id of the neighbour of the cell current, at (x, y), in direction d, or
+	 * -1 if it lies outside a grid without padding. With padding every neighbour
+	 * has an id and, with flat offsets, is found without its coordinates.
+	 */
+	private static int neighbour(ElevationGrid grid, int[] offsets, int current, int x, int y, int d) {
+		if (offsets != null)
+			return current + offsets[d];
+		int newX = x + DX[d];
+		int newY = y + DY[d];
+		if (grid.getPadding() == 0 && !grid.contains(newX, newY))
+			return -1;
+		return grid.index(newX, newY);
+	}
+
+	/**
+	 * Constant id offsets of the neighbours in the search directions, or null if
+	 * the grid does not allow them.
+	 */
+	static int[] neighbourOffsets(ElevationGrid grid) {
+		return grid.neighbourOffsets(DX, DY);
+	}
+
+	/**
+	 * Walk the parents from the cell id back to the cell without parent and pack
+	 * the cells met into a path from that cell to id, filling the array from the
+	 * back so no reversal is needed.
+	 */
+	static PackedPath tracePath(ElevationGrid grid, int[] offsets, byte[] parentDirection, int id) {
+		int length = 0;
+		for (int p = id; p != -1; p = parentOf(grid, offsets, parentDirection, p))
+			length++;
+
+		int[] coordinates = new int[2 * length];
+		int i = coordinates.length;
+		for (int p = id; p != -1; p = parentOf(grid, offsets, parentDirection, p)) {
+			coordinates[--i] = grid.y(p);
+			coordinates[--i] = grid.x(p);
+		}
+		return new PackedPath(coordinates);
+	}
+
+	/**
+	 * Cell id the cell id was entered from, given the direction every cell was
+	 * entered in, or -1 for a cell without parent.
+	 */
+	private static int parentOf(ElevationGrid grid, int[] offsets, byte[] parentDirection, int id) {
+		int d = parentDirection[id];
+		if (d < 0)
+			return -1;
+		int x = offsets == null ? grid.x(id) : 0;
+		int y = offsets == null ? grid.y(id) : 0;
+		return neighbour(grid, offsets, id, x, y, OPPOSITE[d]);
 	}
 
 	/**
@@ -167,64 +681,715 @@ public class IMECEPathFinder {
 	 */
 
 	public List<Point> getMostEfficientPath(Point start, Point end) {
-		// grid dimensions
-		int height = grid.length;
-		int width = grid[0].length;
+		return getMostEfficientPath(start, end, SearchMode.DIJKSTRA);
+	}
+
+	/**
+	 * Get the most cost-efficient path from the source Point start to the
+	 * destination Point end using the given search strategy.
+	 * 
+	 * @return a read-only List view of the Points on the most cost-efficient
+	 *         path from start to end, empty if there is no such path
+	 */
+	public List<Point> getMostEfficientPath(Point start, Point end, SearchMode mode) {
+		return getMostEfficientPackedPath(start, end, mode).asList();
+	}
+
+	/**
+	 * Get the most cost-efficient path from start to end with Dijkstra's
+	 * algorithm, packed into an int[] rather than a list of Points.
+	 */
+	public PackedPath getMostEfficientPackedPath(Point start, Point end) {
+		return getMostEfficientPackedPath(start, end, SearchMode.DIJKSTRA);
+	}
+
+	/**
+	 * Get the most cost-efficient path from start to end using the given search
+	 * strategy, packed into an int[] rather than a list of Points. Missions whose
+	 * end cannot be reached are answered without a search once the component
+	 * labels of the flying height are computed, see search.
+	 * 
+	 * @return the cells on the most cost-efficient path from start to end, empty
+	 *         if there is no such path
+	 */
+	public PackedPath getMostEfficientPackedPath(Point start, Point end, SearchMode mode) {
+		return search(start, end, mode).getPath();
+	}
+
+	/**
+	 * Search the most cost-efficient path from start to end with Dijkstra's
+	 * algorithm, see search(Point, Point, SearchMode).
+	 */
+	public SearchResult search(Point start, Point end) {
+		return search(start, end, SearchMode.DIJKSTRA);
+	}
+
+	/**
+	 * Search the most cost-efficient path from start to end using the given
+	 * strategy, returning the path together with the cost the search settled for
+	 * end, the number of cells it expanded and the time it took. The cost is not
+	 * recomputed from the path, call verify for that. Missions whose end cannot
+	 * be reached are answered without a search, with no cell expanded, once the
+	 * component labels of the flying height are computed. The first search under
+	 * a flying height that fails to reach its end labels it, having already paid
+	 * for flooding the start's region; getComponents and searchAll label it up
+	 * front.
+	 * 
+	 * The search runs in the workspace of the calling thread, which is kept for
+	 * the next search on that thread.
+	 * 
+	 * @throws IllegalArgumentException if start or end lies outside the grid
+	 */
+	public SearchResult search(Point start, Point end, SearchMode mode) {
+		return search(start, end, mode, getParameters());
+	}
+
+	/**
+	 * Search as search(Point, Point, SearchMode), in the given workspace. Only the
+	 * cells the previous search in the workspace reached are reset, so reusing
+	 * one workspace saves allocating and filling the search arrays every query.
+	 */
+	public SearchResult search(Point start, Point end, SearchMode mode, SearchWorkspace workspace) {
+		return search(getTerrain(), getParameters(), start, end, mode, workspace);
+	}
+
+	/**
+	 * Search as search(Point, Point, SearchMode) with the flying limit and cost
+	 * coefficients of the given parameters instead of those of getParameters.
+	 */
+	public SearchResult search(Point start, Point end, SearchMode mode, QueryParameters parameters) {
+		TerrainSnapshot snapshot = getTerrain();
+		return search(snapshot, parameters, start, end, mode, workspace(snapshot.getGrid()));
+	}
+
+	/**
+	 * Search with the given parameters in the given workspace. Any number of
+	 * threads may search at once, each in a workspace of its own: the terrain is
+	 * read once at the start and never written to.
+	 */
+	public SearchResult search(Point start, Point end, SearchMode mode, QueryParameters parameters,
+			SearchWorkspace workspace) {
+		return search(getTerrain(), parameters, start, end, mode, workspace);
+	}
+
+	private SearchResult search(TerrainSnapshot terrain, QueryParameters parameters, Point start, Point end,
+			SearchMode mode, SearchWorkspace workspace) {
+		long begin = System.nanoTime();
+		ElevationGrid grid = terrain.getGrid();
+		checkCell(grid, start);
+		checkCell(grid, end);
+		if (!workspace.fits(grid))
+			throw new IllegalArgumentException("Workspace of " + workspace.size() + " cells is too small for a grid of "
+					+ grid.size() + " cell ids");
+		// labelling a height costs more than a short search, so it waits until a
+		// search has flooded a region without finding the end
+		ComponentLabels labels = terrain.getCachedComponents(parameters.getMaxFlyingHeight());
+		if (labels != null && !isReachable(grid, labels, start, end))
+			return new SearchResult(terrain, parameters, mode, PackedPath.EMPTY, Double.POSITIVE_INFINITY, 0,
+					System.nanoTime() - begin);
+
+		workspace.begin();
+		SearchResult result;
+		if (mode == SearchMode.BIDIRECTIONAL)
+			result = getBidirectionalPath(terrain, parameters, start, end, workspace, begin);
+		else if (mode == SearchMode.FIXED_POINT)
+			result = getFixedPointPath(terrain, parameters, start, end, workspace, begin);
+		else
+			result = getDijkstraPath(terrain, parameters, start, end, mode, workspace, begin);
+
+		// the next unreachable mission under this height is rejected without a search
+		if (labels == null && !result.isFound())
+			terrain.getComponents(parameters.getMaxFlyingHeight());
+		return result;
+	}
 
-		// create cost grid and parent grid
-		double[][] costGrid = new double[height][width];
-		for (double[] row : costGrid)
-			Arrays.fill(row, Double.MAX_VALUE);
+	/**
+	 * Search all missions with as many workers as the common ForkJoinPool has
+	 * threads, see searchAll(Collection, Executor, int, BatchOrder, BiConsumer).
+	 * 
+	 * @return the results in the order of the missions
+	 */
+	public List<SearchResult> searchAll(Collection<Mission> missions) throws InterruptedException {
+		List<SearchResult> results = new ArrayList<>(missions.size());
+		searchAll(missions, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(), BatchOrder.INPUT,
+				(mission, result) -> results.add(result));
+		return results;
+	}
 
-		Point[][] parentGrid = new Point[height][width];
+	/**
+	 * Search the missions concurrently and hand every result to the consumer on
+	 * the calling thread, in the order of the missions or as the searches
+	 * complete. The given number of workers run on the executor, a ForkJoinPool
+	 * or one starting a virtual thread per task, and take the missions one by one.
+	 * Every worker searches in a SearchWorkspace of its own over the shared grid,
+	 * so the memory the batch takes grows with the workers, not the missions.
+	 * 
+	 * The whole batch runs on the terrain published when it starts. Missions
+	 * without QueryParameters of their own use those of the path finder at that
+	 * time. If a search throws, no further missions are started and its exception
+	 * is rethrown, searches still running finish in the background.
+	 */
+	public void searchAll(Collection<Mission> missions, Executor executor, int workers, BatchOrder order,
+			BiConsumer<Mission, SearchResult> consumer) throws InterruptedException {
+		if (workers < 1)
+			throw new IllegalArgumentException("Batch needs at least one worker, got " + workers);
+		List<Mission> batch = List.copyOf(missions);
+		int count = batch.size();
+		if (count == 0)
+			return;
 
-		// movement directions
-		int[][] dirs = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 }, { -1, -1 }, { -1, 1 }, { 1, -1 }, { 1, 1 } };
+		TerrainSnapshot snapshot = getTerrain();
+		QueryParameters defaults = getParameters();
+
+		// label the components before the workers would all do it at once
+		snapshot.getComponents(defaults.getMaxFlyingHeight());
+
+		AtomicInteger nextMission = new AtomicInteger(); // index of the next mission to start
+		BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+		Runnable worker = () -> {
+			// a worker that cannot allocate its workspace reports it like a failed
+			// search, so the batch never waits for results no worker will post
+			int i = -1;
+			try {
+				SearchWorkspace workspace = newWorkspace(snapshot.getGrid());
+				for (i = nextMission.getAndIncrement(); i < count; i = nextMission.getAndIncrement()) {
+					Mission mission = batch.get(i);
+					QueryParameters parameters = mission.getParameters() != null ? mission.getParameters() : defaults;
+					SearchResult result = search(snapshot, parameters, mission.getStart(), mission.getEnd(),
+							mission.getMode(), workspace);
+					completions.add(new Completion(i, result, null));
+				}
+			} catch (RuntimeException | Error e) {
+				nextMission.set(count);
+				completions.add(new Completion(i, null, e));
+			}
+		};
+
+		try {
+			for (int i = Math.min(workers, count); i > 0; i--)
+				executor.execute(worker);
+
+			// results of later missions wait here for the ones before them
+			SearchResult[] held = order == BatchOrder.INPUT ? new SearchResult[count] : null;
+			int delivered = 0;
+			for (int received = 0; received < count; received++) {
+				Completion completion = completions.take();
+				if (completion.failure instanceof RuntimeException e)
+					throw e;
+				if (completion.failure != null)
+					throw (Error) completion.failure;
+
+				if (held == null) {
+					consumer.accept(batch.get(completion.index), completion.result);
+					continue;
+				}
+				held[completion.index] = completion.result;
+				while (delivered < count && held[delivered] != null) {
+					consumer.accept(batch.get(delivered), held[delivered]);
+					held[delivered++] = null;
+				}
+			}
+		} finally {
+			// stop the workers if the batch ended early
+			nextMission.set(count);
+		}
+	}
+
+	/**
+	 * Outcome of one mission of a batch, a result or the exception its search
+	 * threw.
+	 */
+	private static class Completion {
+		final int index; // position of the mission in the batch, -1 if the worker failed before taking one
+		final SearchResult result;
+		final Throwable failure;
+
+		Completion(int index, SearchResult result, Throwable failure) {
+			this.index = index;
+			this.result = result;
+			this.failure = failure;
+		}
+	}
+
+	/**
+	 * Allocate the arrays of searches on the grid.
+	 */
+	SearchWorkspace newWorkspace(ElevationGrid grid) {
+		return SearchWorkspace.forGrid(grid);
+	}
+
+	/**
+	 * Workspace of the calling thread, replaced if the grid outgrew it.
+	 */
+	private SearchWorkspace workspace(ElevationGrid grid) {
+		SearchWorkspace workspace = workspaces.get();
+		if (workspace == null || !workspace.fits(grid)) {
+			workspace = newWorkspace(grid);
+			workspaces.set(workspace);
+		}
+		return workspace;
+	}
+
+	/**
+	 * Run Dijkstra from the source over every cell it can reach, for the cost of
+	 * the cheapest path to each of them and the parents to walk those paths back.
+	 * Answers any number of missions from the same source with a single search.
+	 */
+	public CostField getCostField(Point source) {
+		return getCostField(source, getParameters());
+	}
+
+	/**
+	 * getCostField(Point) with the flying limit and cost coefficients of the given
+	 * parameters. Fields are kept in the cost field cache, so asking again for
+	 * the same source and parameters on the same terrain costs a lookup.
+	 */
+	public CostField getCostField(Point source, QueryParameters parameters) {
+		TerrainSnapshot snapshot = getTerrain();
+		checkCell(snapshot.getGrid(), source);
+		CostFieldCache cache = costFieldCache;
+		CostField field = cache.get(snapshot, source, parameters);
+		if (field == null) {
+			field = computeCostField(snapshot, source, parameters);
+			cache.put(field);
+		}
+		return field;
+	}
+
+	/**
+	 * The most cost-efficient path from start to end read from the cost field of
+	 * start, computing the field if it is not cached. The first mission from a
+	 * source searches the whole reachable area, every later one from the same
+	 * source with the same parameters is answered by walking its path back.
+	 */
+	public SearchResult searchCached(Point start, Point end) {
+		return searchCached(start, end, getParameters());
+	}
+
+	/**
+	 * searchCached(Point, Point) with the given parameters.
+	 */
+	public SearchResult searchCached(Point start, Point end, QueryParameters parameters) {
+		return getCostField(start, parameters).result(end);
+	}
+
+	/**
+	 * The cache getCostField keeps fields in.
+	 */
+	public CostFieldCache getCostFieldCache() {
+		return costFieldCache;
+	}
+
+	/**
+	 * Replace the cost field cache, for instance with one of another memory
+	 * budget, or of budget 0 to keep no fields.
+	 */
+	public void setCostFieldCache(CostFieldCache cache) {
+		if (cache == null)
+			throw new IllegalArgumentException("Cost field cache must not be null");
+		costFieldCache = cache;
+	}
+
+	private CostField computeCostField(TerrainSnapshot snapshot, Point source, QueryParameters parameters) {
+		ElevationGrid grid = snapshot.getGrid();
+		SearchWorkspace workspace = workspace(grid);
+		workspace.begin();
+		getDijkstraPath(snapshot, parameters, source, null, SearchMode.DIJKSTRA, workspace, System.nanoTime());
+
+		// narrow the costs to floats, cells never reached keep Double.MAX_VALUE
+		double[] cost = workspace.cost();
+		float[] costs = new float[grid.size()];
+		for (int id = 0; id < costs.length; id++)
+			costs[id] = cost[id] == Double.MAX_VALUE ? Float.POSITIVE_INFINITY : (float) cost[id];
+		byte[] parents = Arrays.copyOf(workspace.parent(), grid.size());
+		return new CostField(snapshot, parameters, source, costs, parents, neighbourOffsets(grid));
+	}
+
+	/**
+	 * Re-walk the path of a search result and check that its step costs add up
+	 * to the cost the search reported, up to floating point rounding. The path is
+	 * walked on the terrain and with the parameters it was searched with.
+	 * FIXED_POINT results are re-walked with the fixed-point step costs.
+	 */
+	public boolean verify(SearchResult result) {
+		if (!result.isFound())
+			return result.getCost() == Double.POSITIVE_INFINITY;
+		ElevationGrid grid = result.getTerrain().getGrid();
+		double walked = result.getMode() == SearchMode.FIXED_POINT
+				? (double) fixedPointCost(grid, result.getParameters(), result.getPath()) / FIXED_POINT_SCALE
+				: pathCost(grid, result.getParameters(), result.getPath());
+		return Math.abs(walked - result.getCost()) <= 1e-9 * Math.max(1, Math.abs(walked));
+	}
+
+	/**
+	 * Dijkstra, or A* when the mode asks for a heuristic, over the flat search
+	 * arrays. With no end, Dijkstra settles every cell reachable from start and
+	 * returns no path, leaving the costs and parents in the workspace.
+	 */
+	private SearchResult getDijkstraPath(TerrainSnapshot terrain, QueryParameters parameters, Point start, Point end,
+			SearchMode mode, SearchWorkspace workspace, long begin) {
+		// cells are addressed by their ids in the grid storage so that the search
+		// state lives in flat primitive arrays and no Point is created per relaxation
+		ElevationGrid grid = terrain.getGrid();
+		double[] costGrid = workspace.cost();
+
+		// direction each cell was entered in from its parent, -1 for none, a byte
+		// per cell instead of the parent's int id
+		byte[] parentGrid = workspace.parent();
+
+		// on a padded row-major grid neighbours are constant id offsets away and the
+		// padding is never passable, so no coordinates or bounds are needed
+		PassabilityMask passable = terrain.getPassability(parameters.getMaxFlyingHeight());
+		int[] offsets = grid.neighbourOffsets(DX, DY);
+		EdgeCostTable edgeCosts = edgeCostsForSearch(grid, parameters); // null to compute step costs from the elevations
 
 		// start point cost
-		costGrid[start.y][start.x] = 0;
+		int startId = grid.index(start.x, start.y);
+		int endId = end == null ? -1 : grid.index(end.x, end.y);
+		costGrid[startId] = 0;
+		workspace.touch(startId);
+
+		// A* orders the heap by cost plus heuristic, Dijkstra by the cost alone
+		boolean informed = mode != SearchMode.DIJKSTRA;
+		boolean climb = mode == SearchMode.A_STAR_CLIMB;
+		double[] priority = informed ? workspace.priority() : costGrid;
+		if (informed)
+			priority[startId] = heuristic(grid, parameters, start.x, start.y, end.x, end.y, climb);
+		boolean coordinates = offsets == null || informed;
 
-		// using a priority queue for Dijkstra's algorithm
-		PriorityQueue<Point> queue = new PriorityQueue<>(
-				(a, b) -> Double.compare(costGrid[a.y][a.x], costGrid[b.y][b.x]));
+		// indexed heap keyed by the priorities, updated in place with decrease-key
+		IndexedMinHeap queue = informed ? workspace.priorityQueue() : workspace.costQueue();
 
-		queue.add(start);
+		queue.push(startId);
+		long expanded = 0;
 
 		while (!queue.isEmpty()) {
-			Point current = queue.poll();
+			int current = queue.poll();
 
-			// if we reached the end point
-			if (current.equals(end))
+			// the destination is settled, its cost and parent chain are final
+			if (current == endId)
 				break;
+			expanded++;
 
-			for (int[] dir : dirs) {
-				int newX = current.x + dir[0];
-				int newY = current.y + dir[1];
+			int currentX = coordinates ? grid.x(current) : 0;
+			int currentY = coordinates ? grid.y(current) : 0;
+			int currentHeight = edgeCosts == null ? grid.get(current) : 0;
+			double currentCost = costGrid[current];
 
-				// check grid boundaries and maxFlyingHeight
-				if (newX < 0 || newY < 0 || newX >= width || newY >= height || grid[newY][newX] > maxFlyingHeight)
+			for (int d = 0; d < 8; d++) {
+				int next = neighbour(grid, offsets, current, currentX, currentY, d);
+				if (next < 0)
+					continue;
+
+				// one test for the padding border and maxFlyingHeight
+				if (!passable.isPassable(next))
 					continue;
 
 				// calculate cost
-				double newCost = calculateCost(current, new Point(newX, newY));
+				double newCost = currentCost + (edgeCosts != null ? edgeCosts.cost(current, d)
+						: parameters.stepCost(STEP_LENGTH[d], currentHeight, grid.get(next)));
 
-				if (costGrid[current.y][current.x] + newCost < costGrid[newY][newX]) {
-					costGrid[newY][newX] = costGrid[current.y][current.x] + newCost;
-					parentGrid[newY][newX] = current;
+				if (newCost < costGrid[next]) {
+					if (costGrid[next] == Double.MAX_VALUE)
+						workspace.touch(next);
+					costGrid[next] = newCost;
+					parentGrid[next] = (byte) d;
+					if (informed)
+						priority[next] = newCost
+								+ heuristic(grid, parameters, currentX + DX[d], currentY + DY[d], end.x, end.y, climb);
 
-					// only add the point to the queue if the cost is updated
-					queue.add(new Point(newX, newY));
+					// insert the cell or move it up if it is already queued
+					queue.push(next);
 				}
 			}
 		}
 
+		if (edgeCosts == null)
+			countRelaxations(grid, parameters, expanded);
+
 		// construct path from end to start
-		List<Point> path = new ArrayList<>();
-		for (Point p = end; p != null; p = parentGrid[p.y][p.x]) {
-			path.add(0, p); // add at the start to reverse the path
+		if (end == null || costGrid[endId] == Double.MAX_VALUE)
+			return new SearchResult(terrain, parameters, mode, PackedPath.EMPTY, Double.POSITIVE_INFINITY, expanded,
+					System.nanoTime() - begin);
+		return new SearchResult(terrain, parameters, mode, tracePath(grid, offsets, parentGrid, endId),
+				costGrid[endId], expanded, System.nanoTime() - begin);
+	}
+
+	/**
+	 * Bidirectional Dijkstra: a forward search from start and a backward search
+	 * from end run alternately, always advancing the side whose frontier is
+	 * closer. Climbing is only charged uphill, so the backward search relaxes the
+	 * reversed edges, charging calculateCost(neighbor, current).
+	 * 
+	 * Every time an edge joins the two searches the best known total cost is
+	 * kept. Once the smallest forward key plus the smallest backward key reaches
+	 * that total, no unsettled cell can lie on a cheaper path, so the search
+	 * stops with the optimal cost.
+	 * 
+	 * @return the cells on the most cost-efficient path from start to end
+	 */
+	private SearchResult getBidirectionalPath(TerrainSnapshot terrain, QueryParameters parameters, Point start,
+			Point end, SearchWorkspace workspace, long begin) {
+		ElevationGrid grid = terrain.getGrid();
+		double[] forwardCost = workspace.cost();
+		double[] backwardCost = workspace.backwardCost();
+
+		// directions the cells were entered in, forward parents lie towards start,
+		// backward parents towards end
+		byte[] forwardParent = workspace.parent();
+		byte[] backwardParent = workspace.backwardParent();
+
+		PassabilityMask passable = terrain.getPassability(parameters.getMaxFlyingHeight());
+		int[] offsets = grid.neighbourOffsets(DX, DY);
+		EdgeCostTable edgeCosts = edgeCostsForSearch(grid, parameters);
+
+		int startId = grid.index(start.x, start.y);
+		int endId = grid.index(end.x, end.y);
+		forwardCost[startId] = 0;
+		workspace.touch(startId);
+
+		IndexedMinHeap forwardQueue = workspace.costQueue();
+		IndexedMinHeap backwardQueue = workspace.backwardQueue();
+		forwardQueue.push(startId);
+
+		// the forward search never enters a cell above maxFlyingHeight, so such a
+		// destination is unreachable unless it is the start itself
+		if (passable.isPassable(endId) || startId == endId) {
+			backwardCost[endId] = 0;
+			workspace.touch(endId);
+			backwardQueue.push(endId);
+		}
+
+		// cheapest complete path found so far and the cell where its halves meet
+		double best = startId == endId ? 0 : Double.MAX_VALUE;
+		int meeting = startId == endId ? startId : -1;
+		long expanded = 0;
+
+		while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+			int forwardTop = forwardQueue.peek();
+			int backwardTop = backwardQueue.peek();
+			if (forwardCost[forwardTop] + backwardCost[backwardTop] >= best)
+				break;
+
+			boolean forward = forwardCost[forwardTop] <= backwardCost[backwardTop];
+			double[] cost = forward ? forwardCost : backwardCost;
+			double[] otherCost = forward ? backwardCost : forwardCost;
+			byte[] parent = forward ? forwardParent : backwardParent;
+			IndexedMinHeap queue = forward ? forwardQueue : backwardQueue;
+
+			int current = queue.poll();
+			expanded++;
+			int currentX = offsets == null ? grid.x(current) : 0;
+			int currentY = offsets == null ? grid.y(current) : 0;
+			int currentHeight = edgeCosts == null ? grid.get(current) : 0;
+
+			for (int d = 0; d < 8; d++) {
+				int next = neighbour(grid, offsets, current, currentX, currentY, d);
+				if (next < 0)
+					continue;
+
+				// the forward search may leave the start even if it is too high, so the
+				// backward search may step onto it as well
+				if (!passable.isPassable(next) && !(next == startId && !forward))
+					continue;
+
+				// the backward search walks edges against their direction
+				double step;
+				if (edgeCosts != null)
+					step = forward ? edgeCosts.cost(current, d) : edgeCosts.cost(next, OPPOSITE[d]);
+				else
+					step = forward ? parameters.stepCost(STEP_LENGTH[d], currentHeight, grid.get(next))
+							: parameters.stepCost(STEP_LENGTH[d], grid.get(next), currentHeight);
+				double newCost = cost[current] + step;
+
+				if (newCost < cost[next]) {
+					if (cost[next] == Double.MAX_VALUE)
+						workspace.touch(next);
+					cost[next] = newCost;
+					parent[next] = (byte) d;
+					queue.push(next);
+				}
+
+				// next is labelled by both searches, remember the cheapest such path
+				if (otherCost[next] != Double.MAX_VALUE && cost[next] + otherCost[next] < best) {
+					best = cost[next] + otherCost[next];
+					meeting = next;
+				}
+			}
 		}
 
-		return path;
+		if (edgeCosts == null)
+			countRelaxations(grid, parameters, expanded);
+
+		if (meeting == -1) // unreachable destination, no path
+			return new SearchResult(terrain, parameters, SearchMode.BIDIRECTIONAL, PackedPath.EMPTY,
+					Double.POSITIVE_INFINITY, expanded, System.nanoTime() - begin);
+
+		// forward half from start to the meeting cell, filled backwards, then the
+		// backward half on to end
+		int forwardLength = 0;
+		for (int p = meeting; p != -1; p = parentOf(grid, offsets, forwardParent, p))
+			forwardLength++;
+		int backwardLength = 0;
+		for (int p = parentOf(grid, offsets, backwardParent, meeting); p != -1; p = parentOf(grid, offsets,
+				backwardParent, p))
+			backwardLength++;
+
+		int[] coordinates = new int[2 * (forwardLength + backwardLength)];
+		int i = 2 * forwardLength;
+		for (int p = meeting; p != -1; p = parentOf(grid, offsets, forwardParent, p)) {
+			coordinates[--i] = grid.y(p);
+			coordinates[--i] = grid.x(p);
+		}
+		i = 2 * forwardLength;
+		for (int p = parentOf(grid, offsets, backwardParent, meeting); p != -1; p = parentOf(grid, offsets,
+				backwardParent, p)) {
+			coordinates[i++] = grid.x(p);
+			coordinates[i++] = grid.y(p);
+		}
+
+		return new SearchResult(terrain, parameters, SearchMode.BIDIRECTIONAL, new PackedPath(coordinates), best,
+				expanded, System.nanoTime() - begin);
+	}
+
+	/**
+	 * Dijkstra over integer costs: fuelCostPerUnit and climbingCostPerUnit are
+	 * rounded to multiples of 1 / FIXED_POINT_SCALE, so every step cost is a long
+	 * and the frontier can be kept in a monotone radix heap instead of a
+	 * comparison heap.
+	 * 
+	 * @return the cells on the most cost-efficient path from start to end
+	 */
+	private SearchResult getFixedPointPath(TerrainSnapshot terrain, QueryParameters parameters, Point start, Point end,
+			SearchWorkspace workspace, long begin) {
+		ElevationGrid grid = terrain.getGrid();
+		long[] costGrid = workspace.fixedCost();
+		byte[] parentGrid = workspace.parent();
+
+		PassabilityMask passable = terrain.getPassability(parameters.getMaxFlyingHeight());
+		int[] offsets = grid.neighbourOffsets(DX, DY);
+
+		// fixed-point cost of a straight step, a diagonal step and one unit of climb
+		long straightCost = Math.round(parameters.getFuelCostPerUnit() * FIXED_POINT_SCALE);
+		long diagonalCost = Math.round(Math.sqrt(2) * parameters.getFuelCostPerUnit() * FIXED_POINT_SCALE);
+		long climbCost = Math.round(parameters.getClimbingCostPerUnit() * FIXED_POINT_SCALE);
+
+		int startId = grid.index(start.x, start.y);
+		int endId = grid.index(end.x, end.y);
+		costGrid[startId] = 0;
+		workspace.touch(startId);
+
+		RadixHeap queue = workspace.radixQueue();
+		queue.push(startId, 0);
+		long expanded = 0;
+
+		while (!queue.isEmpty()) {
+			int current = queue.poll();
+
+			// skip entries left behind by a later, cheaper push of the same cell
+			if (queue.lastKey() != costGrid[current])
+				continue;
+
+			if (current == endId)
+				break;
+			expanded++;
+
+			int currentX = offsets == null ? grid.x(current) : 0;
+			int currentY = offsets == null ? grid.y(current) : 0;
+			int currentHeight = grid.get(current);
+
+			for (int d = 0; d < 8; d++) {
+				int next = neighbour(grid, offsets, current, currentX, currentY, d);
+				if (next < 0)
+					continue;
+				if (!passable.isPassable(next))
+					continue;
+				int nextHeight = grid.get(next);
+
+				int rise = nextHeight - currentHeight;
+				long stepCost = (DX[d] != 0 && DY[d] != 0 ? diagonalCost : straightCost)
+						+ (rise > 0 ? climbCost * rise : 0);
+				long newCost = costGrid[current] + stepCost;
+
+				if (newCost < costGrid[next]) {
+					if (costGrid[next] == Long.MAX_VALUE)
+						workspace.touch(next);
+					costGrid[next] = newCost;
+					parentGrid[next] = (byte) d;
+					queue.push(next, newCost);
+				}
+			}
+		}
+
+		if (costGrid[endId] == Long.MAX_VALUE)
+			return new SearchResult(terrain, parameters, SearchMode.FIXED_POINT, PackedPath.EMPTY,
+					Double.POSITIVE_INFINITY, expanded, System.nanoTime() - begin);
+		return new SearchResult(terrain, parameters, SearchMode.FIXED_POINT, tracePath(grid, offsets, parentGrid, endId),
+				(double) costGrid[endId] / FIXED_POINT_SCALE, expanded, System.nanoTime() - begin);
+	}
+
+	/**
+	 * How far the cost FIXED_POINT mode finds from start to end deviates from
+	 * the double-precision optimum DIJKSTRA finds, both searched on the same
+	 * terrain with the current parameters. The two may settle for different
+	 * paths. Every step cost is off by at most half a fixed-point unit per cost
+	 * coefficient, so the deviation is at most (1 + rise) / (2 *
+	 * FIXED_POINT_SCALE) per step of the longer of the two paths, rise being
+	 * the largest climb of a step.
+	 * 
+	 * @return the absolute difference between the two costs, 0 if neither search
+	 *         reaches end
+	 */
+	public double getFixedPointCostDeviation(Point start, Point end) {
+		TerrainSnapshot snapshot = getTerrain();
+		QueryParameters parameters = getParameters();
+		SearchWorkspace workspace = workspace(snapshot.getGrid());
+		double fixed = search(snapshot, parameters, start, end, SearchMode.FIXED_POINT, workspace).getCost();
+		double exact = search(snapshot, parameters, start, end, SearchMode.DIJKSTRA, workspace).getCost();
+		return fixed == exact ? 0 : Math.abs(fixed - exact);
+	}
+
+	/**
+	 * Cost of the path in fixed-point units, summed as FIXED_POINT mode does.
+	 */
+	private static long fixedPointCost(ElevationGrid elevationGrid, QueryParameters parameters, PackedPath path) {
+		long straightCost = Math.round(parameters.getFuelCostPerUnit() * FIXED_POINT_SCALE);
+		long diagonalCost = Math.round(Math.sqrt(2) * parameters.getFuelCostPerUnit() * FIXED_POINT_SCALE);
+		long climbCost = Math.round(parameters.getClimbingCostPerUnit() * FIXED_POINT_SCALE);
+
+		long fixedCost = 0;
+		for (int i = 0; i < path.size() - 1; i++) {
+			int x = path.getX(i);
+			int y = path.getY(i);
+			int nextX = path.getX(i + 1);
+			int nextY = path.getY(i + 1);
+			int rise = elevationGrid.get(nextX, nextY) - elevationGrid.get(x, y);
+			fixedCost += (x != nextX && y != nextY ? diagonalCost : straightCost) + (rise > 0 ? climbCost * rise : 0);
+		}
+		return fixedCost;
+	}
+
+	/**
+	 * Lower bound of the cost from (x, y) to (endX, endY), used by the A* modes.
+	 * Every step costs at least its length times fuelCostPerUnit, so the octile
+	 * distance gives an admissible estimate. When climb is set, the elevation the
+	 * path still has to gain to reach the destination is charged as well.
+	 */
+	private static double heuristic(ElevationGrid grid, QueryParameters parameters, int x, int y, int endX, int endY,
+			boolean climb) {
+		int dx = Math.abs(endX - x);
+		int dy = Math.abs(endY - y);
+		int diagonal = Math.min(dx, dy);
+		int straight = Math.max(dx, dy) - diagonal;
+		double estimate = (diagonal * Math.sqrt(2) + straight) * parameters.getFuelCostPerUnit();
+
+		if (climb) {
+			int rise = grid.get(endX, endY) - grid.get(x, y);
+			if (rise > 0)
+				estimate += parameters.getClimbingCostPerUnit() * rise;
+		}
+
+		return estimate;
 	}
 
 	/**
@@ -235,6 +1400,11 @@ public class IMECEPathFinder {
 	 */
 
 	public double getMostEfficientPathCost(List<Point> path) {
+		if (path instanceof PackedPath.PointList)
+			return getMostEfficientPathCost(((PackedPath.PointList) path).path());
+
+		ElevationGrid grid = getElevationGrid();
+		QueryParameters parameters = getParameters();
 		double totalCost = 0.0;
 
 		for (int i = 0; i < path.size() - 1; i++) {
@@ -242,7 +1412,7 @@ public class IMECEPathFinder {
 			Point next = path.get(i + 1);
 
 			// calculate cost between current and next points
-			double cost = calculateCost(current, next);
+			double cost = calculateCost(grid, parameters, current.x, current.y, next.x, next.y);
 
 			totalCost += cost;
 		}
@@ -250,6 +1420,24 @@ public class IMECEPathFinder {
 		return totalCost;
 	}
 
+	/**
+	 * Total cost of a packed path, read without creating any Point.
+	 */
+	public double getMostEfficientPathCost(PackedPath path) {
+		return pathCost(getElevationGrid(), getParameters(), path);
+	}
+
+	static double pathCost(ElevationGrid grid, QueryParameters parameters, PackedPath path) {
+		double totalCost = 0.0;
+
+		for (int i = 0; i < path.size() - 1; i++) {
+			totalCost += calculateCost(grid, parameters, path.getX(i), path.getY(i), path.getX(i + 1),
+					path.getY(i + 1));
+		}
+
+		return totalCost;
+	}
+
 	/**
 	 * Draw the most cost-efficient path on top of the grayscale map from source to
 	 * destination.
@@ -262,6 +1450,17 @@ public class IMECEPathFinder {
 		}
 	}
 
+	/**
+	 * Draw a packed path on top of the grayscale map.
+	 */
+	public void drawMostEfficientPath(Graphics g, PackedPath path) {
+		g.setColor(Color.GREEN); // Set the color of the path to green
+
+		for (int i = 0; i < path.size(); i++) {
+			g.fillOval(path.getX(i), path.getY(i), 1, 1); // Draw a small circle (dot) at each point
+		}
+	}
+
 	/**
 	 * Find an escape path from source towards East such that it has the lowest
 	 * elevation change.
@@ -271,6 +1470,10 @@ public class IMECEPathFinder {
 	 * @return the list of Points on the path
 	 */
 	public List<Point> getLowestElevationEscapePath(Point start) {
+		ElevationGrid elevationGrid = getElevationGrid();
+		checkCell(elevationGrid, start);
+		int height = elevationGrid.getHeight();
+		int width = elevationGrid.getWidth();
 		List<Point> pathPointsList = new ArrayList<>();
 		Point current = start;
 
@@ -278,16 +1481,16 @@ public class IMECEPathFinder {
 		pathPointsList.add(start);
 
 		// Traverse towards East
-		while (current.x < grid[0].length - 1) {
-			int currentElevation = grid[current.y][current.x];
+		while (current.x < width - 1) {
+			int currentElevation = elevationGrid.get(current.x, current.y);
 
 			// Calculate the absolute difference in elevation for the three possible next
 			// points: NE, E, SE
-			int northElevationChange = current.y > 0 ? Math.abs(currentElevation - grid[current.y - 1][current.x + 1])
+			int northElevationChange = current.y > 0 ? Math.abs(currentElevation - elevationGrid.get(current.x + 1, current.y - 1))
 					: Integer.MAX_VALUE;
-			int eastElevationChange = Math.abs(currentElevation - grid[current.y][current.x + 1]);
-			int southElevationChange = current.y < grid.length - 1
-					? Math.abs(currentElevation - grid[current.y + 1][current.x + 1])
+			int eastElevationChange = Math.abs(currentElevation - elevationGrid.get(current.x + 1, current.y));
+			int southElevationChange = current.y < height - 1
+					? Math.abs(currentElevation - elevationGrid.get(current.x + 1, current.y + 1))
 					: Integer.MAX_VALUE;
 
 			// Choose the path with the least change in elevation
@@ -313,6 +1516,7 @@ public class IMECEPathFinder {
 	 * @return the total change in elevation for the entire path
 	 */
 	public int getLowestElevationEscapePathCost(List<Point> pathPointsList) {
+		ElevationGrid elevationGrid = getElevationGrid();
 		int totalChange = 0;
 
 		// Iterate over each pair of adjacent points in the pathPointsList
@@ -321,8 +1525,8 @@ public class IMECEPathFinder {
 			Point nextPoint = pathPointsList.get(i + 1);
 
 			// Get the elevation of the current and next points from the grid
-			int currentElevation = grid[currentPoint.y][currentPoint.x];
-			int nextElevation = grid[nextPoint.y][nextPoint.x];
+			int currentElevation = elevationGrid.get(currentPoint.x, currentPoint.y);
+			int nextElevation = elevationGrid.get(nextPoint.x, nextPoint.y);
 
 			// Calculate the absolute difference between the current and next elevations and
 			// add it to the total change
@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap over packed int cell ids.
+ * The keys live in a caller owned double[] indexed by cell id (the cost grid of
+ * the search), so pushing and decreasing a key never allocates.
+ */
+public class IndexedMinHeap {
+	private final double[] keys; // key of every cell id, shared with the search
+	private final int[] heap; // heap slots holding cell ids
+	private final int[] position; // slot of every cell id in the heap, -1 if absent
+	private int size; // number of cell ids currently in the heap
+
+	public IndexedMinHeap(double[] keys) {
+		this.keys = keys;
+		this.heap = new int[keys.length];
+		this.position = new int[keys.length];
+		Arrays.fill(position, -1);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int id) {
+		return position[id] >= 0;
+	}
+
+	/**
+	 * Insert the cell id, or restore the heap order after its key was lowered.
+	 * The caller must have already written the new key into the key array.
+	 */
+	public void push(int id) {
+		int slot = position[id];
+		if (slot < 0) {
+			slot = size++;
+			heap[slot] = id;
+			position[id] = slot;
+		}
+		siftUp(slot);
+	}
+
+	/**
+	 * Return the cell id with the smallest key without removing it.
+	 */
+	public int peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Remove and return the cell id with the smallest key.
+	 */
+	public int poll() {
+		int top = heap[0];
+		position[top] = -1;
+		int last = heap[--size];
+		if (size > 0) {
+			heap[0] = last;
+			position[last] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	/**
+	 * Empty the heap so it can be reused by another search over the same keys.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int slot) {
+		int id = heap[slot];
+		double key = keys[id];
+		while (slot > 0) {
+			int parent = (slot - 1) >>> 1;
+			int parentId = heap[parent];
+			if (keys[parentId] <= key)
+				break;
+			heap[slot] = parentId;
+			position[parentId] = slot;
+			slot = parent;
+		}
+		heap[slot] = id;
+		position[id] = slot;
+	}
+
+	private void siftDown(int slot) {
+		int id = heap[slot];
+		double key = keys[id];
+		int half = size >>> 1;
+		while (slot < half) {
+			int child = 2 * slot + 1;
+			int right = child + 1;
+			if (right < size && keys[heap[right]] < keys[heap[child]])
+				child = right;
+			int childId = heap[child];
+			if (key <= keys[childId])
+				break;
+			heap[slot] = childId;
+			position[childId] = slot;
+			slot = child;
+		}
+		heap[slot] = id;
+		position[id] = slot;
+	}
+}
@@ -0,0 +1,45 @@
+import java.util.Arrays;
+
+/**
+ * Elevation grid backed by a flat int[].
+ */
+public class IntElevationGrid extends ElevationGrid {
+	private final int[] cells; // elevations indexed by cell id
+
+	public IntElevationGrid(int width, int height) {
+		this(width, height, 0, 0);
+	}
+
+	/**
+	 * Create a grid whose padding cells all hold the sentinel elevation.
+	 */
+	public IntElevationGrid(int width, int height, int padding, int sentinel) {
+		this(new RowMajorLayout(width, height, padding), sentinel);
+	}
+
+	/**
+	 * Create a grid with its cells in the given layout, every cell outside the
+	 * width x height grid holding the sentinel elevation.
+	 */
+	public IntElevationGrid(GridLayout layout, int sentinel) {
+		super(layout);
+		cells = new int[size()];
+		if (size() > (long) width * height)
+			Arrays.fill(cells, sentinel);
+	}
+
+	@Override
+	public int get(int index) {
+		return cells[index];
+	}
+
+	@Override
+	public void set(int index, int value) {
+		cells[index] = value;
+	}
+
+	@Override
+	public int getBytesPerCell() {
+		return 4;
+	}
+}
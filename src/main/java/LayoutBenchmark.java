@@ -0,0 +1,116 @@
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the search time of the cell orders on a large synthetic terrain.
+ * Every order runs the same Dijkstra missions on the same elevations, and the
+ * total cost is printed next to the time so the runs can be checked to agree.
+ *
+ * Usage: java LayoutBenchmark [size] [missions] [order...]
+ *
+ * Give one order per run for figures to compare: once several layouts have
+ * been used in the same JVM, the calls into them are no longer inlined.
+ *
+ * Cache misses cannot be read from Java, run a single order under perf to get
+ * them, for instance:
+ *
+ * <pre>
+ * perf stat -e L1-dcache-load-misses,LLC-load-misses java LayoutBenchmark 4096 20 Z_ORDER
+ * </pre>
+ */
+public class LayoutBenchmark {
+	private static final int WARMUP_MISSIONS = 3; // missions run before timing, to get the search compiled
+	private static final long SEED = 42; // seed of the terrain and the missions
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+		int missions = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		CellOrder[] orders = CellOrder.values();
+		if (args.length > 2) {
+			orders = new CellOrder[args.length - 2];
+			for (int i = 2; i < args.length; i++)
+				orders[i - 2] = CellOrder.valueOf(args[i]);
+		}
+
+		ElevationGrid terrain = terrain(size);
+		// about a tenth of the cells, the highest ones, are above the flying height
+		int maxFlyingHeight = terrain.getMin() + (terrain.getMax() - terrain.getMin()) * 7 / 10;
+		Point[][] pairs = missions(size, WARMUP_MISSIONS + missions);
+
+		System.out.println("Grid " + size + "x" + size + ", " + missions + " missions, max flying height "
+				+ maxFlyingHeight);
+		for (CellOrder order : orders) {
+			ElevationGrid grid = ElevationGrid.compact(terrain, false, GridLayout.of(order, size, size, 1));
+			IMECEPathFinder finder = new IMECEPathFinder(grid, maxFlyingHeight, 1.0, 0.5);
+
+			for (int i = 0; i < WARMUP_MISSIONS; i++)
+				finder.getMostEfficientPath(pairs[i][0], pairs[i][1]);
+
+			double totalCost = 0;
+			long begin = System.nanoTime();
+			for (int i = WARMUP_MISSIONS; i < pairs.length; i++) {
+				List<Point> path = finder.getMostEfficientPath(pairs[i][0], pairs[i][1]);
+				totalCost += finder.getMostEfficientPathCost(path);
+			}
+			long elapsed = System.nanoTime() - begin;
+
+			System.out.printf("%-10s %10.1f ms/mission  %9d cell ids  total cost %.6f%n", order,
+					elapsed / 1e6 / missions, grid.size(), totalCost);
+		}
+	}
+
+	/**
+	 * Smooth hills: a few octaves of bilinearly interpolated random values.
+	 */
+	private static ElevationGrid terrain(int size) {
+		Random random = new Random(SEED);
+		int[] elevations = new int[size * size];
+		for (int octave = 0, cell = 256, amplitude = 1000; octave < 5; octave++, cell /= 2, amplitude /= 2) {
+			int nodes = size / cell + 2;
+			double[] values = new double[nodes * nodes];
+			for (int i = 0; i < values.length; i++)
+				values[i] = random.nextDouble() * amplitude;
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++) {
+					int nx = x / cell;
+					int ny = y / cell;
+					double fx = (x % cell) / (double) cell;
+					double fy = (y % cell) / (double) cell;
+					double top = values[ny * nodes + nx] * (1 - fx) + values[ny * nodes + nx + 1] * fx;
+					double bottom = values[(ny + 1) * nodes + nx] * (1 - fx) + values[(ny + 1) * nodes + nx + 1] * fx;
+					elevations[y * size + x] += (int) (top * (1 - fy) + bottom * fy);
+				}
+			}
+		}
+
+		ElevationGrid grid = new IntElevationGrid(size, size);
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				int elevation = elevations[y * size + x];
+				grid.set(grid.index(x, y), elevation);
+				min = Math.min(min, elevation);
+				max = Math.max(max, elevation);
+			}
+		}
+		grid.setRange(min, max);
+		return grid;
+	}
+
+	/**
+	 * Start and end points in opposite quarters of the grid, so every search
+	 * sweeps a large part of it.
+	 */
+	private static Point[][] missions(int size, int count) {
+		Random random = new Random(SEED);
+		Point[][] pairs = new Point[count][];
+		int quarter = Math.max(1, size / 4);
+		for (int i = 0; i < count; i++) {
+			Point start = new Point(random.nextInt(quarter), random.nextInt(quarter));
+			Point end = new Point(size - 1 - random.nextInt(quarter), size - 1 - random.nextInt(quarter));
+			pairs[i] = new Point[] { start, end };
+		}
+		return pairs;
+	}
+}
@@ -42,22 +42,22 @@ public class Main {
         // Points
         System.out.println("########## Mission 0 ##########");
 
-        // Calculate the shortest path using the getMostEfficientPath method of the map
-        // object
-        List<Point> shortestPath = map.getMostEfficientPath(mission_0_source, mission_0_destination);
+        // Search the shortest path with the search method of the map object, which
+        // returns the path together with its cost
+        SearchResult shortestPath = map.search(mission_0_source, mission_0_destination);
 
         // Check if the shortest path is empty
-        if (shortestPath.size() == 0) {
+        if (!shortestPath.isFound()) {
             System.out.println("ERROR PathNotFound: There is no most cost-efficient path that meets all criteria!");
         } else {
-            System.out.println("The most cost-efficient path's size: " + shortestPath.size());
+            System.out.println("The most cost-efficient path's size: " + shortestPath.getPath().size());
 
-            // Calculate the total cost of the shortest path using the
-            // getMostEfficientPathCost method of the map object
-            double totalCost = map.getMostEfficientPathCost(shortestPath);
+            // The total cost of the shortest path is settled by the search, there is
+            // no need to walk the path again with getMostEfficientPathCost
+            double totalCost = shortestPath.getCost();
             System.out.println("The most cost-efficient path has a cost of: " + totalCost);
 
-            // map.drawMostEfficientPath(g, shortestPath); // COMMENT OUT THIS LINE BEFORE
+            // map.drawMostEfficientPath(g, shortestPath.getPath()); // COMMENT OUT THIS LINE BEFORE
             // TURBO TESTING AND SUBMISSION
         }
 
@@ -0,0 +1,53 @@
+/**
+ * A source and destination to find the most cost-efficient path between, and
+ * the strategy to search it with, for the batch searches of IMECEPathFinder.
+ * A mission may bring its own QueryParameters, otherwise those of the path
+ * finder apply.
+ */
+public class Mission {
+	private final Point start; // source of the path
+	private final Point end; // destination of the path
+	private final SearchMode mode; // strategy to search with
+	private final QueryParameters parameters; // flying limit and costs, null for those of the path finder
+
+	public Mission(Point start, Point end) {
+		this(start, end, SearchMode.DIJKSTRA);
+	}
+
+	public Mission(Point start, Point end, SearchMode mode) {
+		this(start, end, mode, null);
+	}
+
+	public Mission(Point start, Point end, SearchMode mode, QueryParameters parameters) {
+		if (start == null || end == null || mode == null)
+			throw new IllegalArgumentException("Mission needs a start, an end and a mode");
+		this.start = start;
+		this.end = end;
+		this.mode = mode;
+		this.parameters = parameters;
+	}
+
+	public Point getStart() {
+		return start;
+	}
+
+	public Point getEnd() {
+		return end;
+	}
+
+	public SearchMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Parameters of the mission, or null if it uses those of the path finder.
+	 */
+	public QueryParameters getParameters() {
+		return parameters;
+	}
+
+	@Override
+	public String toString() {
+		return start + " -> " + end + " " + mode + (parameters != null ? ", " + parameters : "");
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Cells stored in Morton (Z) order: the id of a cell interleaves the bits of
+ * its column and row, so every aligned square of 2^k x 2^k cells occupies
+ * consecutive ids and the neighbours of a cell are close to it in memory
+ * whichever direction they lie in.
+ *
+ * A single Morton curve over the whole grid would round it up to a power of
+ * two square, which is up to four times its cells for a padded 2^n grid. The
+ * padded grid is instead covered with squares of squareSize cells, Morton
+ * ordered inside and laid row by row of squares, which bounds the unused ids
+ * to less than one square along each edge.
+ */
+public class MortonLayout extends GridLayout {
+	public static final int DEFAULT_SQUARE_SIZE = 32; // 1024 cells, 8 KB of doubles per square
+
+	private final int shift; // log2 of the side of a square
+	private final int mask; // side of a square - 1
+	private final int squaresPerRow; // squares across the padded grid
+	private final int size; // number of cell ids
+
+	public MortonLayout(int width, int height, int padding) {
+		this(width, height, padding, DEFAULT_SQUARE_SIZE);
+	}
+
+	/**
+	 * @param squareSize side of a Morton square in cells, a power of two up to 2^15
+	 */
+	public MortonLayout(int width, int height, int padding, int squareSize) {
+		super(width, height, padding);
+		if (squareSize <= 0 || squareSize > 1 << 15 || Integer.bitCount(squareSize) != 1)
+			throw new IllegalArgumentException("Square size " + squareSize + " is not a power of two up to 32768");
+		this.shift = Integer.numberOfTrailingZeros(squareSize);
+		this.mask = squareSize - 1;
+		this.squaresPerRow = (width + 2 * padding + mask) >> shift;
+		long squaresPerColumn = (height + 2 * padding + mask) >> shift;
+		this.size = checkSize((squaresPerRow * squaresPerColumn) << (2 * shift));
+	}
+
+	@Override
+	public int index(int x, int y) {
+		int px = x + padding;
+		int py = y + padding;
+		int square = (py >> shift) * squaresPerRow + (px >> shift);
+		return (square << (2 * shift)) | spread(px & mask) | (spread(py & mask) << 1);
+	}
+
+	@Override
+	public int x(int index) {
+		int square = index >>> (2 * shift);
+		return ((square % squaresPerRow) << shift | compact(index)) - padding;
+	}
+
+	@Override
+	public int y(int index) {
+		int square = index >>> (2 * shift);
+		return ((square / squaresPerRow) << shift | compact(index >>> 1)) - padding;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	public int getSquareSize() {
+		return mask + 1;
+	}
+
+	@Override
+	public CellOrder getOrder() {
+		return CellOrder.Z_ORDER;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return super.equals(o) && ((MortonLayout) o).shift == shift;
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode() * 31 + shift;
+	}
+
+	/**
+	 * Spread the low 16 bits of v to the even bits of the result.
+	 */
+	private static int spread(int v) {
+		v &= 0xFFFF;
+		v = (v | (v << 8)) & 0x00FF00FF;
+		v = (v | (v << 4)) & 0x0F0F0F0F;
+		v = (v | (v << 2)) & 0x33333333;
+		return (v | (v << 1)) & 0x55555555;
+	}
+
+	/**
+	 * Gather the even bits of v that fall within a square, inverse of spread.
+	 */
+	private int compact(int v) {
+		v &= 0x55555555 & ((1 << (2 * shift)) - 1);
+		v = (v | (v >>> 1)) & 0x33333333;
+		v = (v | (v >>> 2)) & 0x0F0F0F0F;
+		v = (v | (v >>> 4)) & 0x00FF00FF;
+		return (v | (v >>> 8)) & 0xFFFF;
+	}
+}
@@ -0,0 +1,140 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Elevation grid kept outside the Java heap, in direct or memory-mapped
+ * buffers, so large rasters neither need a large heap nor get scanned by the
+ * garbage collector. The cells are split over buffers of SEGMENT_SIZE bytes,
+ * which lifts the 2 GB limit of a single buffer.
+ *
+ * Cells use the encoding of BinaryGridFile: with 1 or 2 bytes per cell they
+ * hold the unsigned offset from the smallest elevation and padding cells hold
+ * the top code, with 4 bytes they hold the elevation itself and padding cells
+ * hold Integer.MAX_VALUE.
+ */
+public class OffHeapElevationGrid extends ElevationGrid {
+	public static final int SEGMENT_SHIFT = 30; // log2 of the bytes per buffer
+	public static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+	private final ByteBuffer[] segments; // cell data, 1 << segmentShift bytes per buffer but the last
+	private final int segmentShift; // log2 of the bytes per buffer, SEGMENT_SHIFT but in tests
+	private final long segmentMask; // byte offset within a buffer
+	private final int elementShift; // log2 of the bytes per cell
+	private final int offset; // elevation of code 0, unused with 4 bytes per cell
+
+	/**
+	 * Allocate an off-heap grid in direct buffers. Padding cells are filled with
+	 * the sentinel code.
+	 */
+	public OffHeapElevationGrid(int width, int height, int padding, int elementWidth, int offset) {
+		this(new RowMajorLayout(width, height, padding), elementWidth, offset);
+	}
+
+	/**
+	 * Allocate an off-heap grid in direct buffers with its cells in the given
+	 * layout. Every cell outside the width x height grid holds the sentinel code.
+	 */
+	public OffHeapElevationGrid(GridLayout layout, int elementWidth, int offset) {
+		this(layout, elementWidth, offset, SEGMENT_SHIFT);
+	}
+
+	/**
+	 * Allocate an off-heap grid in buffers of 1 << segmentShift bytes, so that
+	 * small grids can span several buffers. segmentShift must be at least 2.
+	 */
+	OffHeapElevationGrid(GridLayout layout, int elementWidth, int offset, int segmentShift) {
+		super(layout);
+		if (segmentShift < 2 || segmentShift > SEGMENT_SHIFT)
+			throw new IllegalArgumentException("Unsupported segment shift " + segmentShift);
+		this.elementShift = shiftOf(elementWidth);
+		this.offset = offset;
+		this.segmentShift = segmentShift;
+		this.segmentMask = (1L << segmentShift) - 1;
+
+		long bytes = (long) size() << elementShift;
+		long segmentSize = 1L << segmentShift;
+		segments = new ByteBuffer[(int) ((bytes + segmentSize - 1) >>> segmentShift)];
+		for (int s = 0; s < segments.length; s++) {
+			int length = (int) Math.min(segmentSize, bytes - ((long) s << segmentShift));
+			segments[s] = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		if (size() > (long) width * height) {
+			for (int i = 0; i < size(); i++) {
+				if (!contains(x(i), y(i)))
+					setCode(i, sentinelCode(elementWidth));
+			}
+		}
+	}
+
+	/**
+	 * Wrap buffers already holding the encoded cells, such as the mapped data of
+	 * a BinaryGridFile. Every buffer but the last must hold SEGMENT_SIZE bytes.
+	 */
+	OffHeapElevationGrid(int width, int height, int padding, int elementWidth, int offset, ByteBuffer[] segments) {
+		super(width, height, padding);
+		this.elementShift = shiftOf(elementWidth);
+		this.offset = offset;
+		this.segments = segments;
+		this.segmentShift = SEGMENT_SHIFT;
+		this.segmentMask = SEGMENT_SIZE - 1;
+	}
+
+	/**
+	 * Code stored in padding cells for the given bytes per cell.
+	 */
+	static int sentinelCode(int elementWidth) {
+		return elementWidth == 1 ? 0xFF : elementWidth == 2 ? 0xFFFF : Integer.MAX_VALUE;
+	}
+
+	private static int shiftOf(int elementWidth) {
+		if (elementWidth == 1)
+			return 0;
+		if (elementWidth == 2)
+			return 1;
+		if (elementWidth == 4)
+			return 2;
+		throw new IllegalArgumentException("Unsupported element width " + elementWidth);
+	}
+
+	@Override
+	public int get(int index) {
+		long position = (long) index << elementShift;
+		ByteBuffer segment = segments[(int) (position >>> segmentShift)];
+		int at = (int) (position & segmentMask);
+		if (elementShift == 1)
+			return (segment.getShort(at) & 0xFFFF) + offset;
+		if (elementShift == 0)
+			return (segment.get(at) & 0xFF) + offset;
+		return segment.getInt(at);
+	}
+
+	@Override
+	public void set(int index, int value) {
+		setCode(index, elementShift == 2 ? value : value - offset);
+	}
+
+	private void setCode(int index, int code) {
+		long position = (long) index << elementShift;
+		ByteBuffer segment = segments[(int) (position >>> segmentShift)];
+		int at = (int) (position & segmentMask);
+		if (elementShift == 1)
+			segment.putShort(at, (short) code);
+		else if (elementShift == 0)
+			segment.put(at, (byte) code);
+		else
+			segment.putInt(at, code);
+	}
+
+	@Override
+	public int getBytesPerCell() {
+		return 1 << elementShift;
+	}
+
+	/**
+	 * The buffers holding the encoded cells.
+	 */
+	ByteBuffer[] segments() {
+		return segments;
+	}
+}
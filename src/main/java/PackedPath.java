@@ -0,0 +1,101 @@
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A path of grid cells stored as interleaved x, y coordinates in a single
+ * int[], from the start to the end. Searches fill the array from the back
+ * while walking their parents, so building a path is linear in its length and
+ * allocates no Point. A List<Point> view is available for callers that need
+ * one, creating the Points as they are read.
+ */
+public class PackedPath {
+	public static final PackedPath EMPTY = new PackedPath(new int[0]);
+
+	private final int[] coordinates; // x0, y0, x1, y1, ... from start to end
+
+	/**
+	 * Wrap interleaved x, y coordinates, which the path then owns.
+	 */
+	public PackedPath(int[] coordinates) {
+		if ((coordinates.length & 1) != 0)
+			throw new IllegalArgumentException("Odd number of coordinates: " + coordinates.length);
+		this.coordinates = coordinates;
+	}
+
+	/**
+	 * Pack the points of a path.
+	 */
+	public static PackedPath of(List<Point> points) {
+		int[] coordinates = new int[points.size() * 2];
+		int i = 0;
+		for (Point point : points) {
+			coordinates[i++] = point.x;
+			coordinates[i++] = point.y;
+		}
+		return new PackedPath(coordinates);
+	}
+
+	/**
+	 * Number of cells on the path, both ends included.
+	 */
+	public int size() {
+		return coordinates.length >> 1;
+	}
+
+	public boolean isEmpty() {
+		return coordinates.length == 0;
+	}
+
+	public int getX(int i) {
+		return coordinates[2 * i];
+	}
+
+	public int getY(int i) {
+		return coordinates[2 * i + 1];
+	}
+
+	public Point get(int i) {
+		return new Point(getX(i), getY(i));
+	}
+
+	/**
+	 * Read-only List view of the path. Every get creates a new Point.
+	 */
+	public List<Point> asList() {
+		return new PointList();
+	}
+
+	/**
+	 * The view returned by asList, recognised by IMECEPathFinder so that a view
+	 * handed back to it is read as the packed path.
+	 */
+	class PointList extends AbstractList<Point> implements RandomAccess {
+		PackedPath path() {
+			return PackedPath.this;
+		}
+
+		@Override
+		public Point get(int index) {
+			if (index < 0 || index >= PackedPath.this.size())
+				throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+			return PackedPath.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return PackedPath.this.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < size(); i++) {
+			if (i > 0)
+				builder.append(", ");
+			builder.append('(').append(getX(i)).append(", ").append(getY(i)).append(')');
+		}
+		return builder.append(']').toString();
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * One bit per cell id of an ElevationGrid telling whether a search may enter
+ * the cell under a given maxFlyingHeight. Padding cells are never passable.
+ * At one bit per cell instead of the 8 to 32 of the elevations, the mask of a
+ * whole search region stays in cache while the search runs.
+ *
+ * Masks are immutable, so they can be shared between searches. A mask for
+ * another flying height is derived with withMaxFlyingHeight, which only reads
+ * the elevations of the cells that can change state. Nothing but the bits is
+ * kept per cell.
+ */
+public class PassabilityMask {
+	private final ElevationGrid grid; // grid the mask was built from
+	private final int maxFlyingHeight; // highest passable elevation
+	private final long[] bits; // bit id & 63 of word id >>> 6 set for passable cells
+
+	private PassabilityMask(ElevationGrid grid, int maxFlyingHeight, long[] bits) {
+		this.grid = grid;
+		this.maxFlyingHeight = maxFlyingHeight;
+		this.bits = bits;
+	}
+
+	/**
+	 * Build the mask of the cells at or below maxFlyingHeight with one pass over
+	 * the grid. Only cells within the width x height grid are tested, so padding
+	 * stays impassable whatever value it holds.
+	 */
+	public static PassabilityMask build(ElevationGrid grid, int maxFlyingHeight) {
+		long[] bits = new long[(grid.size() + 63) >>> 6];
+		for (int y = 0; y < grid.getHeight(); y++) {
+			for (int x = 0; x < grid.getWidth(); x++) {
+				int id = grid.index(x, y);
+				if (grid.get(id) <= maxFlyingHeight)
+					bits[id >>> 6] |= 1L << id;
+			}
+		}
+		return new PassabilityMask(grid, maxFlyingHeight, bits);
+	}
+
+	/**
+	 * Whether a search may enter the cell with the given id.
+	 */
+	public boolean isPassable(int id) {
+		return (bits[id >>> 6] & (1L << id)) != 0;
+	}
+
+	public int getMaxFlyingHeight() {
+		return maxFlyingHeight;
+	}
+
+	public ElevationGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Bytes the bits take, one bit per cell id.
+	 */
+	public long getBytes() {
+		return (long) bits.length * Long.BYTES;
+	}
+
+	/**
+	 * Mask of the same grid for another flying height, starting from a copy of
+	 * the bits. A lower height can only close passable cells, so only their
+	 * elevations are read; a higher one can only open the others, padding
+	 * excepted. A derived mask never costs more than building one.
+	 */
+	public PassabilityMask withMaxFlyingHeight(int height) {
+		if (height == maxFlyingHeight)
+			return this;
+		long[] next = bits.clone();
+		int size = grid.size();
+		boolean raise = height > maxFlyingHeight;
+		for (int word = 0; word < next.length; word++) {
+			// the cells that may change: set bits when lowering, clear ones when raising
+			long candidates = raise ? ~bits[word] : bits[word];
+			if (word == next.length - 1 && (size & 63) != 0)
+				candidates &= (1L << size) - 1;
+			while (candidates != 0) {
+				int id = (word << 6) | Long.numberOfTrailingZeros(candidates);
+				candidates &= candidates - 1;
+				if (raise) {
+					if (grid.get(id) <= height && grid.contains(grid.x(id), grid.y(id)))
+						next[word] |= 1L << id;
+				} else if (grid.get(id) > height) {
+					next[word] &= ~(1L << id);
+				}
+			}
+		}
+		return new PassabilityMask(grid, height, next);
+	}
+}
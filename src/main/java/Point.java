@@ -2,14 +2,52 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Point {
-    public int x;
-    public int y;
+    public final int x;
+    public final int y;
 
     public Point(int x, int y) {
         this.x = x;
         this.y = y;
     }
 
+    /**
+     * Pack the coordinates into a single long, x in the high and y in the low 32 bits.
+     */
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) packed;
+    }
+
+    public static Point unpack(long packed) {
+        return new Point(unpackX(packed), unpackY(packed));
+    }
+
+    public long pack() {
+        return pack(x, y);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Point))
+            return false;
+        Point other = (Point) o;
+        return x == other.x && y == other.y;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * x + y;
+    }
+
     @Override
     public String toString() {
         return "(" + x + ", " + y + ")";
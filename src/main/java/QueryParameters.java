@@ -0,0 +1,71 @@
+/**
+ * The flying limit and cost coefficients of a search. Parameters are
+ * immutable and independent of the terrain, so missions against one
+ * TerrainSnapshot can each bring their own without copying the grid.
+ */
+public class QueryParameters {
+	private final int maxFlyingHeight; // highest elevation a path may enter
+	private final double fuelCostPerUnit; // fuel cost per unit distance
+	private final double climbingCostPerUnit; // climbing cost per unit height gained
+
+	public QueryParameters(int maxFlyingHeight, double fuelCostPerUnit, double climbingCostPerUnit) {
+		this.maxFlyingHeight = maxFlyingHeight;
+		this.fuelCostPerUnit = fuelCostPerUnit;
+		this.climbingCostPerUnit = climbingCostPerUnit;
+	}
+
+	public int getMaxFlyingHeight() {
+		return maxFlyingHeight;
+	}
+
+	public double getFuelCostPerUnit() {
+		return fuelCostPerUnit;
+	}
+
+	public double getClimbingCostPerUnit() {
+		return climbingCostPerUnit;
+	}
+
+	public QueryParameters withMaxFlyingHeight(int height) {
+		return new QueryParameters(height, fuelCostPerUnit, climbingCostPerUnit);
+	}
+
+	public QueryParameters withFuelCostPerUnit(double cost) {
+		return new QueryParameters(maxFlyingHeight, cost, climbingCostPerUnit);
+	}
+
+	public QueryParameters withClimbingCostPerUnit(double cost) {
+		return new QueryParameters(maxFlyingHeight, fuelCostPerUnit, cost);
+	}
+
+	/**
+	 * Cost of a step of the given length between two elevations: fuel for the
+	 * distance plus climbing for the height gained, nothing for descending.
+	 */
+	public double stepCost(double length, int currentHeight, int neighborHeight) {
+		double heightImpact = (currentHeight >= neighborHeight) ? 0 : (neighborHeight - currentHeight);
+		return (length * fuelCostPerUnit) + (climbingCostPerUnit * heightImpact);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (o == null || getClass() != o.getClass())
+			return false;
+		QueryParameters other = (QueryParameters) o;
+		return maxFlyingHeight == other.maxFlyingHeight
+				&& Double.compare(fuelCostPerUnit, other.fuelCostPerUnit) == 0
+				&& Double.compare(climbingCostPerUnit, other.climbingCostPerUnit) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return (maxFlyingHeight * 31 + Double.hashCode(fuelCostPerUnit)) * 31 + Double.hashCode(climbingCostPerUnit);
+	}
+
+	@Override
+	public String toString() {
+		return "maxFlyingHeight " + maxFlyingHeight + ", fuel " + fuelCostPerUnit + ", climbing " + climbingCostPerUnit;
+	}
+}
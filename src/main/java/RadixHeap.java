@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * Monotone radix heap over packed int cell ids with non-negative long keys.
+ * Keys pushed must never be smaller than the last key polled, which holds for
+ * Dijkstra with non-negative edge costs. Entries are kept in 65 buckets by the
+ * highest bit in which they differ from the last polled key, so push is O(1)
+ * and poll is amortised O(log C) for the largest key C.
+ *
+ * There is no decrease-key: a cell is pushed again when its cost drops, and
+ * the caller skips entries whose key no longer matches the cell's cost. Equal
+ * keys are polled in a fixed order, so the search is deterministic.
+ */
+public class RadixHeap {
+	private static final int BUCKETS = 65;
+
+	private final long[][] keys = new long[BUCKETS][]; // entry keys per bucket
+	private final int[][] ids = new int[BUCKETS][]; // entry cell ids per bucket
+	private final int[] sizes = new int[BUCKETS]; // number of entries per bucket
+	private long last; // last key polled, lower bound of every queued key
+	private long lastKey; // key of the entry returned by the last poll
+	private int size; // total number of entries
+
+	public RadixHeap() {
+		for (int i = 0; i < BUCKETS; i++) {
+			keys[i] = new long[16];
+			ids[i] = new int[16];
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Insert the cell id with the given key.
+	 */
+	public void push(int id, long key) {
+		if (key < last)
+			throw new IllegalArgumentException("Key " + key + " is below the last polled key " + last);
+		add(bucketOf(key), id, key);
+		size++;
+	}
+
+	/**
+	 * Remove and return the cell id with the smallest key, see lastKey().
+	 */
+	public int poll() {
+		if (sizes[0] == 0) {
+			// find the first non-empty bucket and its smallest key
+			int bucket = 1;
+			while (sizes[bucket] == 0)
+				bucket++;
+			long[] bucketKeys = keys[bucket];
+			int[] bucketIds = ids[bucket];
+			int count = sizes[bucket];
+			long min = Long.MAX_VALUE;
+			for (int i = 0; i < count; i++) {
+				if (bucketKeys[i] < min)
+					min = bucketKeys[i];
+			}
+
+			// every entry of the bucket falls into a lower bucket relative to the new minimum
+			last = min;
+			sizes[bucket] = 0;
+			for (int i = 0; i < count; i++) {
+				add(bucketOf(bucketKeys[i]), bucketIds[i], bucketKeys[i]);
+			}
+		}
+
+		int index = --sizes[0];
+		size--;
+		lastKey = keys[0][index];
+		return ids[0][index];
+	}
+
+	/**
+	 * Key of the cell id returned by the last call to poll().
+	 */
+	public long lastKey() {
+		return lastKey;
+	}
+
+	/**
+	 * Empty the heap so it can be reused by another search.
+	 */
+	public void clear() {
+		for (int i = 0; i < BUCKETS; i++) {
+			sizes[i] = 0;
+		}
+		size = 0;
+		last = 0;
+	}
+
+	private int bucketOf(long key) {
+		return key == last ? 0 : 64 - Long.numberOfLeadingZeros(key ^ last);
+	}
+
+	private void add(int bucket, int id, long key) {
+		int count = sizes[bucket];
+		if (count == ids[bucket].length) {
+			keys[bucket] = Arrays.copyOf(keys[bucket], count * 2);
+			ids[bucket] = Arrays.copyOf(ids[bucket], count * 2);
+		}
+		keys[bucket][count] = key;
+		ids[bucket][count] = id;
+		sizes[bucket] = count + 1;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * Cells stored one padded row after the other.
+ */
+public class RowMajorLayout extends GridLayout {
+	private final int stride; // distance between vertically adjacent cells
+	private final int size; // number of cell ids
+
+	public RowMajorLayout(int width, int height, int padding) {
+		super(width, height, padding);
+		this.stride = width + 2 * padding;
+		this.size = checkSize((long) stride * (height + 2 * padding));
+	}
+
+	@Override
+	public int index(int x, int y) {
+		return (y + padding) * stride + x + padding;
+	}
+
+	@Override
+	public int x(int index) {
+		return index % stride - padding;
+	}
+
+	@Override
+	public int y(int index) {
+		return index / stride - padding;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Distance between the ids of vertically adjacent cells.
+	 */
+	public int getStride() {
+		return stride;
+	}
+
+	@Override
+	public int[] neighbourOffsets(int[] dx, int[] dy) {
+		if (padding == 0)
+			return null;
+		int[] offsets = new int[dx.length];
+		for (int i = 0; i < dx.length; i++)
+			offsets[i] = dy[i] * stride + dx[i];
+		return offsets;
+	}
+
+	@Override
+	public CellOrder getOrder() {
+		return CellOrder.ROW_MAJOR;
+	}
+}
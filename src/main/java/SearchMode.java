@@ -0,0 +1,36 @@
+/**
+ * Search strategies available to IMECEPathFinder.getMostEfficientPath.
+ * All modes return a path of the same optimal cost, they only differ in how
+ * much of the grid they expand to find it.
+ */
+public enum SearchMode {
+    /**
+     * Plain Dijkstra, expands cells in order of their cost from the source.
+     */
+    DIJKSTRA,
+
+    /**
+     * A* guided by the octile distance to the destination times fuelCostPerUnit.
+     */
+    A_STAR,
+
+    /**
+     * A* whose heuristic additionally charges climbingCostPerUnit for every unit
+     * the destination lies above the expanded cell.
+     */
+    A_STAR_CLIMB,
+
+    /**
+     * Dijkstra run from both ends at once, the backward half over reversed edge
+     * costs. Settles roughly half the area of DIJKSTRA on long missions.
+     */
+    BIDIRECTIONAL,
+
+    /**
+     * Dijkstra on costs rounded to fixed-point longs, ordered by a radix heap.
+     * Equal costs are resolved deterministically, the cost found may deviate
+     * from the double-precision optimum by the rounding error, see
+     * IMECEPathFinder.getFixedPointCostDeviation.
+     */
+    FIXED_POINT
+}
@@ -0,0 +1,83 @@
+import java.util.List;
+
+/**
+ * Outcome of one search of IMECEPathFinder: the path, its cost as settled by
+ * the search, and how much work the search took. The cost is read off the
+ * search state, not recomputed from the path, see IMECEPathFinder.verify.
+ */
+public class SearchResult {
+	private final TerrainSnapshot terrain; // terrain the search ran on
+	private final QueryParameters parameters; // flying limit and costs the search ran with
+	private final SearchMode mode; // strategy the path was found with
+	private final PackedPath path; // cells from start to end, empty if unreachable
+	private final double cost; // settled cost of end, POSITIVE_INFINITY if unreachable
+	private final long expandedCells; // cells taken off the queue and expanded
+	private final long elapsedNanos; // wall time of the search
+
+	public SearchResult(TerrainSnapshot terrain, QueryParameters parameters, SearchMode mode, PackedPath path,
+			double cost, long expandedCells, long elapsedNanos) {
+		this.terrain = terrain;
+		this.parameters = parameters;
+		this.mode = mode;
+		this.path = path;
+		this.cost = cost;
+		this.expandedCells = expandedCells;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * Whether a path from start to end exists.
+	 */
+	public boolean isFound() {
+		return !path.isEmpty();
+	}
+
+	public TerrainSnapshot getTerrain() {
+		return terrain;
+	}
+
+	public QueryParameters getParameters() {
+		return parameters;
+	}
+
+	public SearchMode getMode() {
+		return mode;
+	}
+
+	public PackedPath getPath() {
+		return path;
+	}
+
+	/**
+	 * The path as a read-only List of Points, created on demand.
+	 */
+	public List<Point> getPoints() {
+		return path.asList();
+	}
+
+	/**
+	 * Cost of the path. FIXED_POINT searches report their fixed-point sum, which
+	 * may differ from the double-precision cost by the rounding of the step costs.
+	 */
+	public double getCost() {
+		return cost;
+	}
+
+	public long getExpandedCells() {
+		return expandedCells;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public double getElapsedMillis() {
+		return elapsedNanos / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return mode + ": " + (isFound() ? path.size() + " cells, cost " + cost : "no path") + ", " + expandedCells
+				+ " cells expanded in " + getElapsedMillis() + " ms";
+	}
+}
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+
+/**
+ * The per-cell arrays and queues of a search, kept between searches so that a
+ * query does not allocate and fill arrays the size of the grid. Every cell
+ * whose cost a search writes is recorded, and the next search resets only
+ * those cells, so back-to-back queries pay for the cells they reach instead of
+ * the whole grid. The arrays a mode does not use are allocated on its first
+ * search.
+ *
+ * Memory per cell id, for a workspace used by one mode only:
+ *
+ * <pre>
+ * DIJKSTRA            17 bytes  cost 8, parent 1, heap slots and positions 8
+ * A_STAR, *_CLIMB     25 bytes  cost 8, parent 1, priority 8, heap 8
+ * BIDIRECTIONAL       34 bytes  both sides' costs 16, parents 2 and heaps 16
+ * FIXED_POINT         17 bytes  cost 8, parent 1, fixed-point cost 8, plus 12
+ *                               bytes per radix heap entry, a cell being
+ *                               pushed again whenever its cost drops
+ * </pre>
+ *
+ * A workspace used by several modes holds the arrays of all of them, up to 58
+ * bytes per cell. On top of that, 4 bytes per cell a search reaches record it
+ * for the next reset. Parents take a byte, the direction the cell was entered
+ * in, where an int id or a Point reference would take 4 to 8 plus the Point.
+ *
+ * A workspace serves one search at a time. IMECEPathFinder keeps one per
+ * thread, callers running their own threads may hold their own and pass it to
+ * search.
+ */
+public class SearchWorkspace {
+	private final int size; // number of cell ids the arrays cover
+	private final double[] cost; // cost of every cell id, Double.MAX_VALUE if not reached
+	private final byte[] parent; // direction every cell was entered in, -1 for none
+	private double[] backwardCost; // costs of the backward half of a bidirectional search
+	private byte[] backwardParent; // parents of the backward half of a bidirectional search
+	private double[] priority; // cost plus heuristic of the cells queued by A*
+	private long[] fixedCost; // costs of a FIXED_POINT search, Long.MAX_VALUE if not reached
+	private IndexedMinHeap costQueue; // heap keyed by cost
+	private IndexedMinHeap priorityQueue; // heap keyed by priority
+	private IndexedMinHeap backwardQueue; // heap keyed by backwardCost
+	private RadixHeap radixQueue; // heap of the FIXED_POINT search
+	private int[] touched = new int[1024]; // cell ids written since the last reset
+	private int touchedCount; // number of entries of touched in use
+	private long searches; // searches run in the workspace
+
+	public SearchWorkspace(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("Negative workspace size: " + size);
+		this.size = size;
+		this.cost = new double[size];
+		this.parent = new byte[size];
+		Arrays.fill(cost, Double.MAX_VALUE);
+		Arrays.fill(parent, (byte) -1);
+	}
+
+	/**
+	 * Workspace for searches on the grid.
+	 */
+	public static SearchWorkspace forGrid(ElevationGrid grid) {
+		return new SearchWorkspace(grid.size());
+	}
+
+	/**
+	 * Whether the arrays cover every cell id of the grid.
+	 */
+	public boolean fits(ElevationGrid grid) {
+		return grid.size() <= size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getSearches() {
+		return searches;
+	}
+
+	/**
+	 * Reset the cells the previous search wrote and empty the queues.
+	 */
+	void begin() {
+		for (int i = 0; i < touchedCount; i++) {
+			int id = touched[i];
+			cost[id] = Double.MAX_VALUE;
+			parent[id] = -1;
+			if (backwardCost != null) {
+				backwardCost[id] = Double.MAX_VALUE;
+				backwardParent[id] = -1;
+			}
+			if (fixedCost != null)
+				fixedCost[id] = Long.MAX_VALUE;
+		}
+		touchedCount = 0;
+		if (costQueue != null)
+			costQueue.clear();
+		if (priorityQueue != null)
+			priorityQueue.clear();
+		if (backwardQueue != null)
+			backwardQueue.clear();
+		if (radixQueue != null)
+			radixQueue.clear();
+		searches++;
+	}
+
+	/**
+	 * Record that the search wrote the cell id, so that begin resets it. Called
+	 * when a cell is first reached, so every id is recorded once per search and
+	 * direction.
+	 */
+	void touch(int id) {
+		if (touchedCount == touched.length)
+			touched = Arrays.copyOf(touched, touchedCount * 2);
+		touched[touchedCount++] = id;
+	}
+
+	double[] cost() {
+		return cost;
+	}
+
+	byte[] parent() {
+		return parent;
+	}
+
+	double[] backwardCost() {
+		if (backwardCost == null) {
+			backwardCost = new double[size];
+			backwardParent = new byte[size];
+			Arrays.fill(backwardCost, Double.MAX_VALUE);
+			Arrays.fill(backwardParent, (byte) -1);
+		}
+		return backwardCost;
+	}
+
+	byte[] backwardParent() {
+		backwardCost();
+		return backwardParent;
+	}
+
+	/**
+	 * A* priorities, only read for queued cells, which the search has written.
+	 */
+	double[] priority() {
+		if (priority == null)
+			priority = new double[size];
+		return priority;
+	}
+
+	long[] fixedCost() {
+		if (fixedCost == null) {
+			fixedCost = new long[size];
+			Arrays.fill(fixedCost, Long.MAX_VALUE);
+		}
+		return fixedCost;
+	}
+
+	IndexedMinHeap costQueue() {
+		if (costQueue == null)
+			costQueue = new IndexedMinHeap(cost);
+		return costQueue;
+	}
+
+	IndexedMinHeap priorityQueue() {
+		if (priorityQueue == null)
+			priorityQueue = new IndexedMinHeap(priority());
+		return priorityQueue;
+	}
+
+	IndexedMinHeap backwardQueue() {
+		if (backwardQueue == null)
+			backwardQueue = new IndexedMinHeap(backwardCost());
+		return backwardQueue;
+	}
+
+	RadixHeap radixQueue() {
+		if (radixQueue == null)
+			radixQueue = new RadixHeap();
+		return radixQueue;
+	}
+}
@@ -0,0 +1,43 @@
+import java.util.Arrays;
+
+/**
+ * Elevation grid storing every cell as an unsigned 16-bit offset from the
+ * smallest elevation, for ranges of at most MAX_RANGE. The top code is kept
+ * for padding cells, which therefore read as offset + 65535, above every
+ * elevation in the grid.
+ */
+public class ShortElevationGrid extends ElevationGrid {
+	public static final int MAX_RANGE = 0xFFFE; // widest max - min the codes can hold
+	private static final short SENTINEL = (short) 0xFFFF; // code of the padding cells
+
+	private final short[] cells; // elevation - offset, indexed by cell id
+	private final int offset; // elevation of code 0
+
+	public ShortElevationGrid(int width, int height, int padding, int offset) {
+		this(new RowMajorLayout(width, height, padding), offset);
+	}
+
+	public ShortElevationGrid(GridLayout layout, int offset) {
+		super(layout);
+		this.offset = offset;
+		cells = new short[size()];
+		// padding cells, and cells a layout adds to round the grid up, hold the sentinel
+		if (size() > (long) width * height)
+			Arrays.fill(cells, SENTINEL);
+	}
+
+	@Override
+	public int get(int index) {
+		return (cells[index] & 0xFFFF) + offset;
+	}
+
+	@Override
+	public void set(int index, int value) {
+		cells[index] = (short) (value - offset);
+	}
+
+	@Override
+	public int getBytesPerCell() {
+		return 2;
+	}
+}
@@ -0,0 +1,276 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * An elevation grid that no longer changes, together with the data searches
+ * derive from it: the passability masks and connected components of the
+ * flying heights asked for. Any number of threads can search one snapshot
+ * without locking, each with its own QueryParameters. The terrain is changed
+ * by creating a new snapshot with update and publishing it, searches running
+ * on the old one finish on the old elevations.
+ *
+ * The masks and labels of the most recently used heights are kept within a
+ * memory budget, by default an eighth of the maximum heap, and for at most
+ * MAX_CACHED_HEIGHTS heights each. The labels take 4 bytes per cell, about 256 MB
+ * on an 8192x8192 grid, so the budget rather than the count bounds large
+ * grids. A mask or labels larger than the whole budget are returned but not
+ * kept. Looking a height up reads a ConcurrentHashMap and takes no lock; only
+ * adding a mask or labels does, and that is when the least recently used ones
+ * are dropped. Heights are computed outside the lock, so two threads asking
+ * for a new height at once both compute it.
+ *
+ * The grid must not be written to once it is in a snapshot.
+ */
+public class TerrainSnapshot {
+	public static final int MAX_CACHED_HEIGHTS = 8; // most flying heights whose masks and labels are kept
+	public static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 8; // bytes kept by default
+
+	private static final AtomicLong CREATED = new AtomicLong(); // snapshots created so far
+
+	private final ElevationGrid grid; // elevations, read only
+	private final long version; // number of updates since the first snapshot
+	private final long serial = CREATED.incrementAndGet(); // order of creation among all snapshots
+	private final HeightCache heights; // masks and labels per maxFlyingHeight
+	private volatile PassabilityMask lastMask; // last mask built, masks of other heights are derived from it
+	private volatile long checksum = -1; // CRC32C of the elevations, -1 until computed
+
+	public TerrainSnapshot(ElevationGrid grid) {
+		this(grid, DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * A snapshot keeping at most memoryBudget bytes of masks and labels, a
+	 * budget its updates keep as well.
+	 */
+	public TerrainSnapshot(ElevationGrid grid, long memoryBudget) {
+		this(grid, 0, memoryBudget);
+	}
+
+	private TerrainSnapshot(ElevationGrid grid, long version, long memoryBudget) {
+		if (memoryBudget < 0)
+			throw new IllegalArgumentException("Negative memory budget: " + memoryBudget);
+		this.grid = grid;
+		this.version = version;
+		this.heights = new HeightCache(memoryBudget);
+	}
+
+	public ElevationGrid getGrid() {
+		return grid;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Whether this snapshot was created after the other one, as the update of a
+	 * snapshot always is.
+	 */
+	boolean isNewerThan(TerrainSnapshot other) {
+		return serial > other.serial;
+	}
+
+	/**
+	 * CRC32C of the elevations, row-major as little-endian ints whatever the
+	 * layout and storage of the grid. Computed on the first call.
+	 */
+	public long getChecksum() {
+		long value = checksum;
+		if (value < 0) {
+			CRC32C crc = new CRC32C();
+			ByteBuffer row = ByteBuffer.allocate(grid.getWidth() * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			for (int y = 0; y < grid.getHeight(); y++) {
+				row.clear();
+				for (int x = 0; x < grid.getWidth(); x++)
+					row.putInt(grid.get(x, y));
+				crc.update(row.flip());
+			}
+			value = crc.getValue();
+			checksum = value;
+		}
+		return value;
+	}
+
+	public int getWidth() {
+		return grid.getWidth();
+	}
+
+	public int getHeight() {
+		return grid.getHeight();
+	}
+
+	/**
+	 * The cells a search may enter under maxFlyingHeight. Masks of new heights
+	 * are derived from the last one built, reading only the cells that may change.
+	 */
+	public PassabilityMask getPassability(int maxFlyingHeight) {
+		PassabilityMask cached = (PassabilityMask) heights.get(HeightCache.MASK, maxFlyingHeight);
+		if (cached != null)
+			return cached;
+		PassabilityMask base = lastMask;
+		PassabilityMask mask = base == null ? PassabilityMask.build(grid, maxFlyingHeight)
+				: base.withMaxFlyingHeight(maxFlyingHeight);
+		lastMask = mask;
+		return (PassabilityMask) heights.keep(HeightCache.MASK, maxFlyingHeight, mask, mask.getBytes());
+	}
+
+	/**
+	 * The connected components of the cells a search may enter under
+	 * maxFlyingHeight, labelled once per height.
+	 */
+	public ComponentLabels getComponents(int maxFlyingHeight) {
+		ComponentLabels cached = getCachedComponents(maxFlyingHeight);
+		if (cached != null)
+			return cached;
+		ComponentLabels labels = ComponentLabels.build(getPassability(maxFlyingHeight));
+		return (ComponentLabels) heights.keep(HeightCache.LABELS, maxFlyingHeight, labels, labels.getBytes());
+	}
+
+	/**
+	 * The connected components under maxFlyingHeight if they are already
+	 * labelled, null otherwise. Nothing is computed.
+	 */
+	public ComponentLabels getCachedComponents(int maxFlyingHeight) {
+		return (ComponentLabels) heights.get(HeightCache.LABELS, maxFlyingHeight);
+	}
+
+	/**
+	 * Bytes of masks and labels currently kept.
+	 */
+	public long getCachedBytes() {
+		return heights.bytes();
+	}
+
+	/**
+	 * Masks and labels of the most recently used flying heights, sharing one
+	 * memory budget. A lookup stamps its entry with the number of insertions so
+	 * far, written only when it changed, so threads reading the same height do
+	 * not keep writing to it. Recency is therefore told apart by insertion: of
+	 * the entries used since the last one, any may be dropped first.
+	 */
+	private static class HeightCache {
+		static final int MASK = 0; // kind of a PassabilityMask entry
+		static final int LABELS = 1; // kind of a ComponentLabels entry
+
+		private final long memoryBudget; // most bytes of values kept
+		// entries keyed by maxFlyingHeight and kind, see key
+		private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+		private volatile long insertions; // entries added so far, written under the lock
+		private long bytes; // bytes taken by the kept values, written under the lock
+		private final int[] counts = new int[2]; // entries kept of each kind, written under the lock
+
+		private static class Entry {
+			final Object value;
+			final long bytes; // bytes the value takes
+			volatile long used; // insertions counted when the entry was last looked up
+
+			Entry(Object value, long bytes, long used) {
+				this.value = value;
+				this.bytes = bytes;
+				this.used = used;
+			}
+		}
+
+		HeightCache(long memoryBudget) {
+			this.memoryBudget = memoryBudget;
+		}
+
+		private static Long key(int kind, int maxFlyingHeight) {
+			return (long) maxFlyingHeight << 1 | kind;
+		}
+
+		private static int kindOf(long key) {
+			return (int) (key & 1);
+		}
+
+		Object get(int kind, int maxFlyingHeight) {
+			Entry entry = entries.get(key(kind, maxFlyingHeight));
+			if (entry == null)
+				return null;
+			long now = insertions;
+			if (entry.used != now)
+				entry.used = now;
+			return entry.value;
+		}
+
+		/**
+		 * Add the value unless another thread added one first, then drop the least
+		 * recently used entries of any kind beyond the budget, and of its kind
+		 * beyond MAX_CACHED_HEIGHTS. A value larger than the whole budget is not
+		 * kept. Returns the value kept, or the one given if none is.
+		 */
+		synchronized Object keep(int kind, int maxFlyingHeight, Object value, long valueBytes) {
+			Long key = key(kind, maxFlyingHeight);
+			Entry previous = entries.get(key);
+			if (previous != null)
+				return previous.value;
+			if (valueBytes > memoryBudget)
+				return value;
+			long now = ++insertions;
+			entries.put(key, new Entry(value, valueBytes, now));
+			bytes += valueBytes;
+			counts[kind]++;
+			while (bytes > memoryBudget || counts[kind] > MAX_CACHED_HEIGHTS) {
+				boolean anyKind = bytes > memoryBudget;
+				Map.Entry<Long, Entry> eldest = null;
+				for (Map.Entry<Long, Entry> candidate : entries.entrySet()) {
+					if ((anyKind || kindOf(candidate.getKey()) == kind)
+							&& (eldest == null || candidate.getValue().used < eldest.getValue().used))
+						eldest = candidate;
+				}
+				entries.remove(eldest.getKey());
+				bytes -= eldest.getValue().bytes;
+				counts[kindOf(eldest.getKey())]--;
+			}
+			return value;
+		}
+
+		synchronized long bytes() {
+			return bytes;
+		}
+	}
+
+	/**
+	 * A new snapshot holding a copy of the grid with the editor's changes. The
+	 * editor gets an int grid of the same layout, so any elevation can be set;
+	 * the copy is then moved to the most compact storage its new range allows,
+	 * off the heap if the grid is. This snapshot and its grid are left as they
+	 * are.
+	 *
+	 * @throws UnsupportedOperationException for a tiled grid, which would have to
+	 *                                       be copied into memory whole; write a
+	 *                                       new tile file and publish a snapshot
+	 *                                       of it instead
+	 */
+	public TerrainSnapshot update(Consumer<ElevationGrid> editor) {
+		if (grid instanceof TiledElevationGrid)
+			throw new UnsupportedOperationException(
+					"Tiled grids are not copied into memory to be updated, publish a snapshot of a new tile file");
+		boolean offHeap = grid instanceof OffHeapElevationGrid;
+		ElevationGrid copy = offHeap ? new OffHeapElevationGrid(grid.getLayout(), 4, 0)
+				: new IntElevationGrid(grid.getLayout(), Integer.MAX_VALUE);
+		for (int y = 0; y < grid.getHeight(); y++) {
+			for (int x = 0; x < grid.getWidth(); x++) {
+				copy.set(copy.index(x, y), grid.get(x, y));
+			}
+		}
+		editor.accept(copy);
+
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int y = 0; y < copy.getHeight(); y++) {
+			for (int x = 0; x < copy.getWidth(); x++) {
+				int elevation = copy.get(x, y);
+				min = Math.min(min, elevation);
+				max = Math.max(max, elevation);
+			}
+		}
+		copy.setRange(min, max);
+		return new TerrainSnapshot(ElevationGrid.compact(copy, offHeap), version + 1, heights.memoryBudget);
+	}
+}
@@ -0,0 +1,408 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.InputMismatchException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Elevation grid read on demand from a tile file, for maps that do not fit in
+ * memory. The raster is split into square tiles of tileSize x tileSize cells
+ * and only the most recently used tiles are kept, within a memory budget.
+ *
+ * Tile file layout, all values little-endian:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     8  magic "IMECETIL"
+ *      8     4  format version (1)
+ *     12     4  rows
+ *     16     4  cols
+ *     20     4  tile size in cells, a power of two
+ *     24     4  element width in bytes (1, 2 or 4)
+ *     28     4  min elevation
+ *     32     4  max elevation
+ *     36    28  reserved, zero
+ *     64        tiles, row by row of tiles, cells row-major inside a tile
+ * </pre>
+ *
+ * Cells are encoded as in BinaryGridFile. Tiles on the right and bottom edges
+ * are stored full size, their cells outside the grid hold the sentinel code.
+ *
+ * The cell ids follow the GridLayout chosen when opening the file, row-major
+ * by default, so searches run on a tiled grid unchanged. Reads are safe from
+ * several threads. Every thread remembers the tile it read last and only
+ * takes the cache lock when it moves to another tile, so searches running side
+ * by side do not take turns on the lock. A thread's last tile stays reachable
+ * after the cache drops it, so up to one tile per reading thread is held on top
+ * of the budget.
+ *
+ * The grid holds the tile file open until it is closed. Whoever opens it owns
+ * it, see IMECEPathFinder for the grids a path finder opens itself.
+ */
+public class TiledElevationGrid extends ElevationGrid implements Closeable {
+	public static final long MAGIC = 0x4C49544543454D49L; // "IMECETIL" read as a little-endian long
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 64;
+	public static final int DEFAULT_TILE_SIZE = 256;
+	public static final long DEFAULT_MEMORY_BUDGET = 256L << 20; // bytes of tiles kept in memory
+
+	private final FileChannel channel; // open tile file
+	private final int tileShift; // log2 of the tile size
+	private final int tilesPerRow; // number of tiles across the grid
+	private final int elementWidth; // bytes per cell
+	private final int tileBytes; // bytes of one tile
+	private final int maxTiles; // tiles that fit in the memory budget
+	private final LinkedHashMap<Integer, Tile> cache; // loaded tiles, least recently used first
+	private final ThreadLocal<Tile> lastTile = new ThreadLocal<>(); // tile of the thread's previous read
+	private long hits; // tile lookups answered by the cache
+	private long misses; // tile lookups that read the file
+	private long evictions; // tiles dropped to stay within the budget
+
+	/**
+	 * A loaded tile. Immutable, so it can be handed between threads freely.
+	 */
+	private static final class Tile {
+		final int key; // tile index, tileY * tilesPerRow + tileX
+		final ByteBuffer data; // encoded cells
+
+		Tile(int key, ByteBuffer data) {
+			this.key = key;
+			this.data = data;
+		}
+	}
+
+	private TiledElevationGrid(FileChannel channel, GridLayout layout, int tileSize, int elementWidth,
+			long memoryBudget) {
+		super(layout);
+		this.channel = channel;
+		this.tileShift = Integer.numberOfTrailingZeros(tileSize);
+		this.tilesPerRow = (width + tileSize - 1) >> tileShift;
+		this.elementWidth = elementWidth;
+		this.tileBytes = tileSize * tileSize * elementWidth;
+		this.maxTiles = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / tileBytes));
+		this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+				if (size() <= maxTiles)
+					return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Check whether the file starts with the tile file magic number.
+	 */
+	public static boolean isTiledGrid(String filename) {
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			return channel.read(magic, 0) == 8 && magic.getLong(0) == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Open a tile file, keeping at most memoryBudget bytes of tiles in memory.
+	 *
+	 * @throws InputMismatchException if the file is not a valid tile file
+	 */
+	public static TiledElevationGrid open(String filename, long memoryBudget, int padding) throws IOException {
+		return open(filename, memoryBudget, padding, CellOrder.ROW_MAJOR);
+	}
+
+	/**
+	 * Open a tile file, handing out cell ids in the given order. The order only
+	 * affects the ids, and so the search arrays, not how tiles are read.
+	 *
+	 * @throws InputMismatchException if the file is not a valid tile file
+	 */
+	public static TiledElevationGrid open(String filename, long memoryBudget, int padding, CellOrder order)
+			throws IOException {
+		FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (channel.read(header, 0) != HEADER_SIZE || header.getLong(0) != MAGIC)
+				throw new InputMismatchException(filename + " is not a tile file");
+			if (header.getInt(8) != VERSION)
+				throw new InputMismatchException("Unsupported tile file version " + header.getInt(8) + " in " + filename);
+
+			int rows = header.getInt(12);
+			int cols = header.getInt(16);
+			int tileSize = header.getInt(20);
+			int elementWidth = header.getInt(24);
+			if (tileSize <= 0 || Integer.bitCount(tileSize) != 1)
+				throw new InputMismatchException("Tile size " + tileSize + " in " + filename + " is not a power of two");
+			if (elementWidth != 1 && elementWidth != 2 && elementWidth != 4)
+				throw new InputMismatchException("Unsupported element width " + elementWidth + " in " + filename);
+
+			TiledElevationGrid grid = new TiledElevationGrid(channel, GridLayout.of(order, cols, rows, padding),
+					tileSize, elementWidth, memoryBudget);
+			grid.setRange(header.getInt(28), header.getInt(32));
+			return grid;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Write the grid as a tile file with the given power of two tile size.
+	 */
+	public static void write(String filename, ElevationGrid grid, int tileSize) throws IOException {
+		int rows = grid.getHeight();
+		int cols = grid.getWidth();
+		int[] values = new int[cols];
+		try (TileWriter writer = new TileWriter(filename, rows, cols, tileSize, grid.getMin(), grid.getMax())) {
+			for (int y = 0; y < rows; y++) {
+				for (int x = 0; x < cols; x++)
+					values[x] = grid.get(x, y);
+				writer.row(y, values);
+			}
+		}
+	}
+
+	/**
+	 * Convert a whitespace separated text grid into a tile file without holding
+	 * the grid in memory. A first pass over the text checks it and finds the
+	 * elevation range, which sets the element width, a second one streams the
+	 * rows into the tiles one band of tiles at a time.
+	 */
+	public static void convert(String textFile, int rows, int cols, String tileFile, int tileSize) throws IOException {
+		ElevationFileReader range = new ElevationFileReader(rows, cols);
+		range.read(textFile, (y, values) -> {
+		});
+		try (TileWriter writer = new TileWriter(tileFile, rows, cols, tileSize, range.getMin(), range.getMax())) {
+			new ElevationFileReader(rows, cols).readInOrder(textFile, writer::row);
+		}
+	}
+
+	/**
+	 * Writes a tile file from its rows, given in order. The rows of one band of
+	 * tiles, tileSize rows across the whole grid, are gathered in memory and the
+	 * band is written once its last row is in, so a tile file of any size is
+	 * written in the memory of one band. The header is written on close, once
+	 * every row is in, so a file left incomplete is not taken for a tile file.
+	 */
+	private static final class TileWriter implements Closeable {
+		private final FileChannel channel; // tile file being written
+		private final int rows; // number of rows in the grid
+		private final int cols; // number of columns in the grid
+		private final int tileShift; // log2 of the tile size
+		private final int elementWidth; // bytes per cell
+		private final int min; // smallest elevation, subtracted from narrow codes
+		private final int max; // largest elevation
+		private final int sentinel; // code of the cells outside the grid
+		private final ByteBuffer band; // tiles of the current band, in file order
+		private int nextRow; // row expected next
+
+		TileWriter(String filename, int rows, int cols, int tileSize, int min, int max) throws IOException {
+			if (tileSize <= 0 || Integer.bitCount(tileSize) != 1)
+				throw new IllegalArgumentException("Tile size " + tileSize + " is not a power of two");
+			this.rows = rows;
+			this.cols = cols;
+			this.tileShift = Integer.numberOfTrailingZeros(tileSize);
+			this.elementWidth = ElevationGrid.elementWidthFor(min, max);
+			this.min = min;
+			this.max = max;
+			this.sentinel = OffHeapElevationGrid.sentinelCode(elementWidth);
+			int tilesPerRow = (cols + tileSize - 1) >> tileShift;
+			this.band = ByteBuffer.allocate(Math.multiplyExact(tilesPerRow, tileSize * tileSize * elementWidth))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			this.channel = FileChannel.open(Path.of(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				channel.position(HEADER_SIZE);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			clearBand();
+		}
+
+		/**
+		 * Add row y, which must follow the row added last.
+		 */
+		void row(int y, int[] values) throws IOException {
+			if (y != nextRow)
+				throw new IllegalStateException("Expected row " + nextRow + " but got row " + y);
+			int tileSize = 1 << tileShift;
+			int mask = tileSize - 1;
+			int rowStart = (y & mask) << tileShift;
+			for (int x = 0; x < cols; x++) {
+				// elevations are stored as offsets from min unless they take 4 bytes
+				int code = elementWidth == 4 ? values[x] : values[x] - min;
+				int at = (((x >> tileShift) << (2 * tileShift)) + rowStart + (x & mask)) * elementWidth;
+				if (elementWidth == 1)
+					band.put(at, (byte) code);
+				else if (elementWidth == 2)
+					band.putShort(at, (short) code);
+				else
+					band.putInt(at, code);
+			}
+			nextRow++;
+			if ((nextRow & mask) == 0 || nextRow == rows) {
+				band.clear();
+				while (band.hasRemaining())
+					channel.write(band);
+				clearBand();
+			}
+		}
+
+		/**
+		 * Fill the band with the sentinel, which the cells outside the grid on the
+		 * right and bottom edges keep.
+		 */
+		private void clearBand() {
+			for (int at = 0; at < band.capacity(); at += elementWidth) {
+				if (elementWidth == 1)
+					band.put(at, (byte) sentinel);
+				else if (elementWidth == 2)
+					band.putShort(at, (short) sentinel);
+				else
+					band.putInt(at, sentinel);
+			}
+		}
+
+		/**
+		 * Write the header and close the file, which must have been given every
+		 * row.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				if (nextRow != rows)
+					throw new IllegalStateException("Tile file closed after " + nextRow + " of " + rows + " rows");
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				header.putLong(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putInt(1 << tileShift)
+						.putInt(elementWidth).putInt(min).putInt(max);
+				header.clear();
+				while (header.hasRemaining())
+					channel.write(header, header.position());
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Command line converter: text_grid rows cols tile_file [tile_size]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4 && args.length != 5) {
+			System.err.println("Usage: java TiledElevationGrid <text grid> <rows> <cols> <tile file> [tile size]");
+			System.exit(1);
+		}
+		int tileSize = args.length == 5 ? Integer.parseInt(args[4]) : DEFAULT_TILE_SIZE;
+		convert(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]), args[3], tileSize);
+	}
+
+	@Override
+	public int get(int index) {
+		int x = x(index);
+		int y = y(index);
+		// padding cells read higher than any elevation, like the other storages
+		if (!contains(x, y))
+			return Integer.MAX_VALUE;
+
+		int mask = (1 << tileShift) - 1;
+		int key = (y >> tileShift) * tilesPerRow + (x >> tileShift);
+		Tile tile = lastTile.get();
+		if (tile == null || tile.key != key) {
+			tile = tile(key);
+			lastTile.set(tile);
+		}
+
+		int at = ((((y & mask) << tileShift) | (x & mask)) * elementWidth);
+		if (elementWidth == 2)
+			return (tile.data.getShort(at) & 0xFFFF) + getMin();
+		if (elementWidth == 1)
+			return (tile.data.get(at) & 0xFF) + getMin();
+		return tile.data.getInt(at);
+	}
+
+	@Override
+	public void set(int index, int value) {
+		throw new UnsupportedOperationException("Tiled grids are read-only");
+	}
+
+	@Override
+	public int getBytesPerCell() {
+		return elementWidth;
+	}
+
+	/**
+	 * Look the tile up in the cache, reading it from the file on a miss and
+	 * evicting the least recently used tile when the budget is exceeded.
+	 */
+	private synchronized Tile tile(int key) {
+		Tile tile = cache.get(key);
+		if (tile != null) {
+			hits++;
+			return tile;
+		}
+
+		misses++;
+		ByteBuffer data = ByteBuffer.allocate(tileBytes).order(ByteOrder.LITTLE_ENDIAN);
+		long position = HEADER_SIZE + (long) key * tileBytes;
+		try {
+			while (data.hasRemaining()) {
+				if (channel.read(data, position + data.position()) < 0)
+					throw new InputMismatchException("Tile file ends inside tile " + key);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		tile = new Tile(key, data);
+		cache.put(key, tile);
+		return tile;
+	}
+
+	/**
+	 * Tile lookups answered from memory. Consecutive reads from the same tile by
+	 * the same thread only count once.
+	 */
+	public synchronized long getCacheHits() {
+		return hits;
+	}
+
+	/**
+	 * Tile lookups that had to read the tile file.
+	 */
+	public synchronized long getCacheMisses() {
+		return misses;
+	}
+
+	/**
+	 * Tiles dropped from the cache to stay within the memory budget.
+	 */
+	public synchronized long getCacheEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Bytes of tile data currently held in memory.
+	 */
+	public synchronized long getCachedBytes() {
+		return (long) cache.size() * tileBytes;
+	}
+
+	/**
+	 * Whether the tile file is still open, so that tiles not cached can be read.
+	 */
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryGridFileTest {
+	@TempDir
+	Path dir;
+
+	private static ElevationGrid grid(int width, int height, int min, int max) {
+		Random random = new Random(width * 31L + max);
+		ElevationGrid grid = TestGrids.fill(new IntElevationGrid(width, height),
+				(x, y) -> min + random.nextInt(max - min + 1));
+		grid.set(grid.index(0, 0), min);
+		grid.set(grid.index(width - 1, height - 1), max);
+		grid.setRange(min, max);
+		return grid;
+	}
+
+	/**
+	 * Grids needing 1, 2 and 4 bytes per cell map back to the same elevations,
+	 * with the header describing them.
+	 */
+	@Test
+	void writesAndMapsBackEveryElementWidth() throws IOException {
+		int[][] ranges = { { 10, 200 }, { -300, 40000 }, { -5, 1_000_000 } };
+		for (int i = 0; i < ranges.length; i++) {
+			ElevationGrid grid = grid(13, 7, ranges[i][0], ranges[i][1]);
+			String file = dir.resolve("grid" + i + ".bin").toString();
+			BinaryGridFile.write(file, grid, 1);
+
+			assertTrue(BinaryGridFile.isBinaryGrid(file));
+			BinaryGridFile binary = BinaryGridFile.open(file);
+			assertEquals(7, binary.getRows());
+			assertEquals(13, binary.getCols());
+			assertEquals(1, binary.getPadding());
+			assertEquals(1 << i, binary.getElementWidth());
+			assertEquals(ranges[i][0], binary.getMin());
+			assertEquals(ranges[i][1], binary.getMax());
+			assertTrue(binary.verifyChecksum());
+
+			ElevationGrid mapped = binary.map();
+			for (int y = 0; y < 7; y++) {
+				for (int x = 0; x < 13; x++)
+					assertEquals(grid.get(x, y), mapped.get(x, y), "width " + (1 << i) + " (" + x + ", " + y + ")");
+			}
+			assertTrue(mapped.get(-1, -1) > ranges[i][1], "padding must read above max");
+		}
+	}
+
+	/**
+	 * A changed cell byte no longer matches the checksum of the header.
+	 */
+	@Test
+	void rejectsCorruptedCells() throws IOException {
+		String file = dir.resolve("grid.bin").toString();
+		BinaryGridFile.write(file, grid(9, 9, 0, 100), 1);
+		try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+			long at = BinaryGridFile.HEADER_SIZE + 40;
+			raw.seek(at);
+			int b = raw.read();
+			raw.seek(at);
+			raw.write(b ^ 0x10);
+		}
+		assertFalse(BinaryGridFile.open(file).verifyChecksum());
+	}
+
+	/**
+	 * Converting a text grid row by row gives the same file as writing the grid
+	 * from memory.
+	 */
+	@Test
+	void convertsTextGridRowByRow() throws IOException {
+		ElevationGrid source = grid(13, 7, -300, 40000);
+		Path text = dir.resolve("grid.txt");
+		TestGrids.writeText(text, source);
+		Path written = dir.resolve("written.bin");
+		Path converted = dir.resolve("converted.bin");
+		BinaryGridFile.write(written.toString(), source, 1);
+		BinaryGridFile.convert(text.toString(), 7, 13, converted.toString());
+		assertArrayEquals(Files.readAllBytes(written), Files.readAllBytes(converted));
+		assertTrue(BinaryGridFile.open(converted.toString()).verifyChecksum());
+	}
+
+	/**
+	 * Loading a binary grid maps it and writes no grayscaleMap.dat, which only
+	 * an explicit call or a text grid writes.
+	 */
+	@Test
+	void loadingWritesNoGrayscaleMap() throws IOException {
+		Path grayscale = Path.of("grayscaleMap.dat");
+		Files.deleteIfExists(grayscale);
+		String file = dir.resolve("grid.bin").toString();
+		BinaryGridFile.write(file, grid(9, 9, 0, 100), 1);
+		IMECEPathFinder finder = new IMECEPathFinder(file, 9, 9, 100, 1, 1);
+		assertTrue(finder.getElevationGrid() instanceof OffHeapElevationGrid);
+		assertFalse(Files.exists(grayscale));
+		finder.saveGrayscaleMap();
+		assertEquals(9, Files.readAllLines(grayscale).size());
+		Files.delete(grayscale);
+	}
+
+	@Test
+	void rejectsTruncatedAndForeignFiles() throws IOException {
+		Path file = dir.resolve("grid.bin");
+		BinaryGridFile.write(file.toString(), grid(9, 9, 0, 100), 1);
+		byte[] bytes = Files.readAllBytes(file);
+		Path truncated = dir.resolve("truncated.bin");
+		Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+		assertThrows(InputMismatchException.class, () -> BinaryGridFile.open(truncated.toString()));
+
+		Path text = dir.resolve("grid.txt");
+		Files.writeString(text, "1 2\n3 4\n");
+		assertFalse(BinaryGridFile.isBinaryGrid(text.toString()));
+		assertThrows(InputMismatchException.class, () -> BinaryGridFile.open(text.toString()));
+	}
+}
@@ -0,0 +1,62 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class CostFieldCacheTest {
+	private static IMECEPathFinder finder() {
+		return TestGrids.finder(TestGrids.grid(16, 16, 0, 9, (x, y) -> (x + y) % 10), 9);
+	}
+
+	@Test
+	void keepsFieldsWithinTheBudget() {
+		IMECEPathFinder finder = finder();
+		CostField field = finder.getCostField(new Point(0, 0));
+		assertSame(field, finder.getCostField(new Point(0, 0)));
+		assertEquals(1, finder.getCostFieldCache().getHits());
+		assertEquals(0, finder.getCostFieldCache().getRejections());
+	}
+
+	/**
+	 * Lookups from searches still running on the terrain before an update miss
+	 * without moving the cache back, so the fields rebased onto the new terrain
+	 * stay however old and new lookups interleave.
+	 */
+	@Test
+	void olderTerrainMissesWithoutRebasing() {
+		// the wall at x = 8 keeps the cells right of it out of reach of (0, 0)
+		IMECEPathFinder finder = TestGrids.finder(TestGrids.grid(16, 16, 0, 10, (x, y) -> x == 8 ? 10 : 0), 9);
+		CostFieldCache cache = finder.getCostFieldCache();
+		Point source = new Point(0, 0);
+		QueryParameters parameters = finder.getParameters();
+		TerrainSnapshot before = finder.getTerrain();
+		CostField field = finder.getCostField(source);
+
+		TerrainSnapshot after = finder.updateTerrain(grid -> grid.set(grid.index(15, 15), 5));
+		CostField rebased = cache.get(after, source, parameters);
+		assertSame(after, rebased.getTerrain());
+		for (int i = 0; i < 5; i++) {
+			assertNull(cache.get(before, source, parameters));
+			assertSame(rebased, cache.get(after, source, parameters));
+		}
+		cache.put(field);
+		assertSame(rebased, cache.get(after, source, parameters));
+		assertEquals(0, cache.getInvalidations());
+		assertEquals(1 + 5, cache.getMisses()); // the first field and every older lookup
+	}
+
+	/**
+	 * A field larger than the whole budget is not kept, and the cache says so.
+	 */
+	@Test
+	void countsFieldsLargerThanTheBudget() {
+		IMECEPathFinder finder = finder();
+		CostFieldCache cache = new CostFieldCache(100);
+		finder.setCostFieldCache(cache);
+		finder.getCostField(new Point(0, 0));
+		assertEquals(1, cache.getRejections());
+		assertEquals(0, cache.size());
+		assertNull(cache.get(finder.getTerrain(), new Point(0, 0), finder.getParameters()));
+	}
+}
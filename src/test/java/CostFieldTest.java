@@ -0,0 +1,47 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.InputMismatchException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CostFieldTest {
+	@TempDir
+	Path dir;
+
+	private static TerrainSnapshot terrain(int seed) {
+		return new TerrainSnapshot(TestGrids.grid(8, 6, 0, 100, (x, y) -> (x * 31 + y * 17 + seed) % 101));
+	}
+
+	@Test
+	void readsBackOntoTheSameElevations() throws IOException {
+		TerrainSnapshot terrain = terrain(0);
+		IMECEPathFinder finder = new IMECEPathFinder(terrain, new QueryParameters(80, 1, 1));
+		CostField field = finder.getCostField(new Point(1, 1));
+		String file = dir.resolve("field.bin").toString();
+		field.write(file);
+
+		CostField back = CostField.read(file, terrain(0));
+		for (int y = 0; y < 6; y++) {
+			for (int x = 0; x < 8; x++)
+				assertEquals(field.getCost(new Point(x, y)), back.getCost(new Point(x, y)));
+		}
+	}
+
+	/**
+	 * A fresh terrain of the same size and version but other elevations does not
+	 * accept the field.
+	 */
+	@Test
+	void rejectsOtherElevations() throws IOException {
+		TerrainSnapshot terrain = terrain(0);
+		IMECEPathFinder finder = new IMECEPathFinder(terrain, new QueryParameters(80, 1, 1));
+		String file = dir.resolve("field.bin").toString();
+		finder.getCostField(new Point(1, 1)).write(file);
+
+		assertThrows(InputMismatchException.class, () -> CostField.read(file, terrain(1)));
+	}
+}
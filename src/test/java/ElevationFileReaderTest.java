@@ -0,0 +1,143 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ElevationFileReaderTest {
+	private static final int LARGE_ROWS = 1500;
+	private static final int LARGE_COLS = 1000;
+
+	@TempDir
+	Path dir;
+
+	private ElevationGrid read(String text, int rows, int cols) throws IOException {
+		Path file = dir.resolve("grid.txt");
+		Files.writeString(file, text);
+		ElevationGrid grid = new IntElevationGrid(cols, rows);
+		new ElevationFileReader(rows, cols).read(file.toString(), grid);
+		return grid;
+	}
+
+	/**
+	 * CRLF line ends, tabs between values, signs and blank or whitespace-only
+	 * lines anywhere in the file are all accepted, and the range is recorded.
+	 */
+	@Test
+	void readsCrlfTabsAndBlankLines() throws IOException {
+		ElevationGrid grid = read("\r\n  \r\n1\t-2 +3\r\n\r\n\t4  5\t\t6 \r\n \t\r\n7 8 9", 3, 3);
+		int[][] expected = { { 1, -2, 3 }, { 4, 5, 6 }, { 7, 8, 9 } };
+		for (int y = 0; y < 3; y++) {
+			for (int x = 0; x < 3; x++)
+				assertEquals(expected[y][x], grid.get(x, y), "(" + x + ", " + y + ")");
+		}
+		assertEquals(-2, grid.getMin());
+		assertEquals(9, grid.getMax());
+	}
+
+	@Test
+	void rejectsMissingAndExtraRows() {
+		assertThrows(NoSuchElementException.class, () -> read("1 2\n3 4\n", 3, 2));
+		assertThrows(NoSuchElementException.class, () -> read("1 2\n3 4\n5 6\n", 2, 2));
+	}
+
+	@Test
+	void rejectsShortAndLongRows() {
+		assertThrows(InputMismatchException.class, () -> read("1 2\n3\n", 2, 2));
+		assertThrows(InputMismatchException.class, () -> read("1 2\n3 4 5\n", 2, 2));
+	}
+
+	@Test
+	void rejectsTokensThatAreNotInts() {
+		assertThrows(InputMismatchException.class, () -> read("1 x\n3 4\n", 2, 2));
+		assertThrows(InputMismatchException.class, () -> read("1 -\n3 4\n", 2, 2));
+		assertThrows(InputMismatchException.class, () -> read("1 2147483648\n3 4\n", 2, 2));
+	}
+
+	/**
+	 * A file of over 8 MB, twice the 4 MB a chunk takes at least, so it is
+	 * parsed as several chunks. Lines end in CRLF, values are separated by spaces
+	 * or tabs and every 97th line is followed by a blank one. The row given as
+	 * shortRow loses its last value, the row given as missingRow is left out.
+	 */
+	private Path largeFile(String name, int[][] values, int shortRow, int missingRow) throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int y = 0; y < values.length; y++) {
+			if (y == missingRow)
+				continue;
+			int cols = y == shortRow ? LARGE_COLS - 1 : LARGE_COLS;
+			for (int x = 0; x < cols; x++)
+				text.append(values[y][x]).append(x % 7 == 0 ? '\t' : ' ');
+			text.append("\r\n");
+			if (y % 97 == 0)
+				text.append(" \t\r\n");
+		}
+		Path file = dir.resolve(name);
+		Files.writeString(file, text);
+		assertTrue(Files.size(file) > 8L << 20);
+		return file;
+	}
+
+	private static int[][] largeValues() {
+		Random random = new Random(11);
+		int[][] values = new int[LARGE_ROWS][LARGE_COLS];
+		for (int[] row : values) {
+			for (int x = 0; x < LARGE_COLS; x++)
+				row[x] = random.nextInt(2_000_000) - 1_000_000;
+		}
+		return values;
+	}
+
+	/**
+	 * The rows of every chunk land where they belong, whichever chunk they are
+	 * parsed in.
+	 */
+	@Test
+	void readsLargeFileInChunks() throws IOException {
+		int[][] values = largeValues();
+		Path file = largeFile("large.txt", values, -1, -1);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			ElevationGrid grid = new IntElevationGrid(LARGE_COLS, LARGE_ROWS);
+			ElevationFileReader reader = new ElevationFileReader(LARGE_ROWS, LARGE_COLS, pool);
+			reader.read(file.toString(), grid);
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			for (int y = 0; y < LARGE_ROWS; y++) {
+				for (int x = 0; x < LARGE_COLS; x++) {
+					assertEquals(values[y][x], grid.get(x, y), "(" + x + ", " + y + ")");
+					min = Math.min(min, values[y][x]);
+					max = Math.max(max, values[y][x]);
+				}
+			}
+			assertEquals(min, reader.getMin());
+			assertEquals(max, reader.getMax());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * A missing row is found by the counting pass, a short row in the last chunk
+	 * by the parsing pass.
+	 */
+	@Test
+	void rejectsMismatchedRowsInLargeFile() throws IOException {
+		int[][] values = largeValues();
+		Path missing = largeFile("missing.txt", values, -1, LARGE_ROWS / 2);
+		assertThrows(NoSuchElementException.class, () -> new ElevationFileReader(LARGE_ROWS, LARGE_COLS)
+				.read(missing.toString(), new IntElevationGrid(LARGE_COLS, LARGE_ROWS)));
+		Path shortRow = largeFile("short.txt", values, LARGE_ROWS - 3, -1);
+		assertThrows(InputMismatchException.class, () -> new ElevationFileReader(LARGE_ROWS, LARGE_COLS)
+				.read(shortRow.toString(), new IntElevationGrid(LARGE_COLS, LARGE_ROWS)));
+	}
+}
@@ -0,0 +1,57 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ElevationGridTest {
+	private static final int[] DX = { -1, 1, 0, 0, -1, -1, 1, 1 };
+	private static final int[] DY = { 0, 0, -1, 1, -1, 1, -1, 1 };
+
+	/**
+	 * On a padded row-major grid every neighbour of every cell, edge cells
+	 * included, is a constant id offset away, landing on a padding cell outside
+	 * the grid.
+	 */
+	@Test
+	void paddedRowMajorNeighboursAreConstantOffsets() {
+		ElevationGrid grid = ElevationGrid.create(7, 5, 1, 0, 100);
+		int[] offsets = grid.neighbourOffsets(DX, DY);
+		assertNotNull(offsets);
+		for (int y = 0; y < 5; y++) {
+			for (int x = 0; x < 7; x++) {
+				for (int d = 0; d < 8; d++)
+					assertEquals(grid.index(x + DX[d], y + DY[d]), grid.index(x, y) + offsets[d]);
+			}
+		}
+	}
+
+	/**
+	 * Without padding, or in an order where neighbours are not a constant offset
+	 * apart, the searches fall back to coordinates.
+	 */
+	@Test
+	void otherGridsHaveNoOffsets() {
+		assertNull(ElevationGrid.create(7, 5, 0, 0, 100).neighbourOffsets(DX, DY));
+		assertNull(new IntElevationGrid(GridLayout.of(CellOrder.Z_ORDER, 7, 5, 1), Integer.MAX_VALUE)
+				.neighbourOffsets(DX, DY));
+	}
+
+	/**
+	 * Padding cells read above the largest elevation in every storage, so a
+	 * search under any flying height up to max never enters them.
+	 */
+	@Test
+	void paddingReadsAboveMax() {
+		for (int max : new int[] { 200, 40000, 1_000_000 }) {
+			for (CellOrder order : CellOrder.values()) {
+				ElevationGrid grid = ElevationGrid.create(GridLayout.of(order, 7, 5, 1), 0, max, false);
+				for (int id = 0; id < grid.size(); id++) {
+					if (!grid.contains(grid.x(id), grid.y(id)))
+						assertTrue(grid.get(id) > max, max + " " + order + " id " + id);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,352 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IMECEPathFinderTest {
+	@TempDir
+	Path dir;
+
+	/**
+	 * A text grid whose range needs int storage keeps a padding border that no
+	 * search may step onto, so every path climbs the wall instead of going
+	 * around it through the border.
+	 */
+	@Test
+	void wideRangeTextGridKeepsPaddingImpassable() throws IOException {
+		Path file = dir.resolve("wide.txt");
+		Files.writeString(file, "0 0 0 60000 0 0 0\n0 0 0 60000 0 100000 0\n0 0 0 60000 0 0 0\n");
+		for (CellOrder order : CellOrder.values()) {
+			IMECEPathFinder finder = new IMECEPathFinder(file.toString(), 3, 7, 70000, 1, 1, GridStorage.AUTO, order);
+			ElevationGrid grid = finder.getElevationGrid();
+			Point start = new Point(0, 2);
+			Point end = new Point(6, 2);
+			double cost = finder.search(start, end, SearchMode.DIJKSTRA).getCost();
+			for (SearchMode mode : SearchMode.values()) {
+				SearchResult result = finder.search(start, end, mode);
+				assertFalse(result.getPath().isEmpty(), order + " " + mode);
+				for (Point point : result.getPath().asList())
+					assertTrue(grid.contains(point.x, point.y), order + " " + mode + " steps on " + point);
+				assertEquals(cost, result.getCost(), 1e-9 * cost, order + " " + mode);
+			}
+		}
+	}
+
+	/**
+	 * A grid file that cannot be read fails the constructor rather than the
+	 * first search.
+	 */
+	@Test
+	void unreadableGridFileFailsConstruction() {
+		String missing = dir.resolve("missing.txt").toString();
+		UncheckedIOException thrown = assertThrows(UncheckedIOException.class,
+				() -> new IMECEPathFinder(missing, 3, 3, 10, 1, 1));
+		assertTrue(thrown.getMessage().contains(missing));
+	}
+
+	/**
+	 * A point outside the grid is rejected by every entry point rather than
+	 * resolved to a padding cell or wrapped into the next row.
+	 */
+	@Test
+	void rejectsPointsOutsideTheGrid() {
+		IMECEPathFinder finder = TestGrids.finder(TestGrids.grid(6, 5, 0, 9, (x, y) -> x), 9);
+		CostField field = finder.getCostField(new Point(0, 0));
+		Point inside = new Point(2, 2);
+		for (Point outside : new Point[] { new Point(7, 0), new Point(6, 0), new Point(-1, 2), new Point(0, 5),
+				new Point(2, -1) }) {
+			for (SearchMode mode : SearchMode.values()) {
+				assertThrows(IllegalArgumentException.class, () -> finder.search(outside, inside, mode),
+						mode + " " + outside);
+				assertThrows(IllegalArgumentException.class, () -> finder.search(inside, outside, mode),
+						mode + " " + outside);
+			}
+			assertThrows(IllegalArgumentException.class, () -> finder.isReachable(outside, inside));
+			assertThrows(IllegalArgumentException.class, () -> finder.isReachable(inside, outside));
+			assertThrows(IllegalArgumentException.class, () -> finder.getCostField(outside));
+			assertThrows(IllegalArgumentException.class, () -> finder.searchCached(inside, outside));
+			assertThrows(IllegalArgumentException.class, () -> field.getCost(outside));
+			assertThrows(IllegalArgumentException.class, () -> field.pathTo(outside));
+			assertThrows(IllegalArgumentException.class, () -> field.isReachable(outside));
+			assertThrows(IllegalArgumentException.class, () -> finder.getLowestElevationEscapePath(outside));
+		}
+	}
+
+	/**
+	 * A caller-supplied grid whose padding holds an elevation below the flying
+	 * height still gets an impassable border.
+	 */
+	@Test
+	void passabilityMaskIgnoresPaddingValue() {
+		for (CellOrder order : CellOrder.values()) {
+			ElevationGrid grid = TestGrids.fill(new IntElevationGrid(GridLayout.of(order, 3, 2, 1), 0),
+					(x, y) -> x == 1 ? 10 : 0);
+			PassabilityMask mask = PassabilityMask.build(grid, 5);
+			for (int id = 0; id < grid.size(); id++) {
+				boolean inside = grid.contains(grid.x(id), grid.y(id));
+				assertEquals(inside && grid.get(id) <= 5, mask.isPassable(id), order + " id " + id);
+			}
+			IMECEPathFinder finder = TestGrids.finder(grid, 5);
+			for (SearchMode mode : SearchMode.values())
+				assertTrue(finder.search(new Point(0, 0), new Point(2, 1), mode).getPath().isEmpty(), order + " " + mode);
+		}
+	}
+
+	/**
+	 * Every mode finds a path exactly when a breadth-first search over the cells
+	 * at or below the flying height reaches the end, and all modes agree on its
+	 * cost.
+	 */
+	@Test
+	void searchesAgreeWithBreadthFirstReachability() {
+		Random random = new Random(3);
+		for (int t = 0; t < 60; t++) {
+			int width = 1 + random.nextInt(30);
+			int height = 1 + random.nextInt(60);
+			ElevationGrid grid = TestGrids.random(GridLayout.of(CellOrder.values()[t % 3], width, height, t % 2), 100,
+					random);
+			int maxFlyingHeight = 40 + random.nextInt(30);
+			IMECEPathFinder finder = TestGrids.finder(grid, maxFlyingHeight);
+			for (int q = 0; q < 10; q++) {
+				Point start = new Point(random.nextInt(width), random.nextInt(height));
+				Point end = new Point(random.nextInt(width), random.nextInt(height));
+				boolean reachable = reaches(grid, maxFlyingHeight, start, end);
+				assertEquals(reachable, finder.isReachable(start, end));
+				double cost = finder.search(start, end, SearchMode.DIJKSTRA).getCost();
+				for (SearchMode mode : SearchMode.values()) {
+					SearchResult result = finder.search(start, end, mode);
+					assertEquals(reachable, !result.getPath().isEmpty(), mode.toString());
+					if (reachable)
+						assertEquals(cost, result.getCost(), 1e-6 * cost, mode.toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * The fixed-point deviation is the gap between the costs the FIXED_POINT and
+	 * DIJKSTRA searches find, which may take different paths, within the
+	 * rounding bound of the longer one. A mission neither search completes
+	 * deviates by 0.
+	 */
+	@Test
+	void fixedPointCostDeviationComparesBothSearches() {
+		Random random = new Random(9);
+		IMECEPathFinder finder = new IMECEPathFinder(TestGrids.random(30, 20, 1000, random), 800, 0.1, 0.37);
+		double largest = 0;
+		for (int q = 0; q < 40; q++) {
+			Point start = new Point(random.nextInt(30), random.nextInt(20));
+			Point end = new Point(random.nextInt(30), random.nextInt(20));
+			SearchResult fixed = finder.search(start, end, SearchMode.FIXED_POINT);
+			SearchResult exact = finder.search(start, end, SearchMode.DIJKSTRA);
+			double deviation = finder.getFixedPointCostDeviation(start, end);
+			if (!exact.isFound()) {
+				assertEquals(0, deviation, start + " " + end);
+				continue;
+			}
+			assertEquals(Math.abs(fixed.getCost() - exact.getCost()), deviation, start + " " + end);
+			int steps = Math.max(fixed.getPath().size(), exact.getPath().size()) - 1;
+			assertTrue(deviation <= steps * (1 + 1000) / (2.0 * IMECEPathFinder.FIXED_POINT_SCALE), start + " " + end);
+			largest = Math.max(largest, deviation);
+		}
+		assertTrue(largest > 0, "0.1 and 0.37 are not multiples of a fixed-point unit");
+	}
+
+	/**
+	 * Searches return the same paths and costs, to the bit, whether they read
+	 * their step costs from a table or compute them on the fly.
+	 */
+	@Test
+	void edgeCostTableDoesNotChangeResults() {
+		Random random = new Random(5);
+		ElevationGrid grid = TestGrids.random(40, 30, 1000, random);
+		IMECEPathFinder onTheFly = new IMECEPathFinder(grid, 700, 0.1, 0.37);
+		onTheFly.setEdgeCostSweeps(Integer.MAX_VALUE);
+		IMECEPathFinder tabled = new IMECEPathFinder(grid, 700, 0.1, 0.37);
+		tabled.setEdgeCostSweeps(0);
+		for (int q = 0; q < 50; q++) {
+			Point start = new Point(random.nextInt(40), random.nextInt(30));
+			Point end = new Point(random.nextInt(40), random.nextInt(30));
+			for (SearchMode mode : SearchMode.values()) {
+				SearchResult expected = onTheFly.search(start, end, mode);
+				SearchResult actual = tabled.search(start, end, mode);
+				assertEquals(expected.getCost(), actual.getCost(), mode.toString());
+				assertEquals(expected.getPath().asList(), actual.getPath().asList(), mode.toString());
+			}
+		}
+		assertNull(onTheFly.getEdgeCosts(onTheFly.getParameters()));
+		assertNotNull(tabled.getEdgeCosts(tabled.getParameters()));
+	}
+
+	/**
+	 * No table is built unless asked for, however many times the searches sweep
+	 * the grid.
+	 */
+	@Test
+	void edgeCostTableIsOptIn() {
+		IMECEPathFinder finder = TestGrids.finder(TestGrids.grid(8, 8, 0, 9, (x, y) -> (x + y) % 10), 9);
+		for (int q = 0; q < 100; q++)
+			finder.search(new Point(0, 0), new Point(7, 7));
+		assertNull(finder.getEdgeCosts(finder.getParameters()));
+		finder.setEdgeCostSweeps(IMECEPathFinder.SUGGESTED_EDGE_COST_SWEEPS);
+		for (int q = 0; q < 100; q++)
+			finder.search(new Point(0, 0), new Point(7, 7));
+		assertNotNull(finder.getEdgeCosts(finder.getParameters()));
+	}
+
+	/**
+	 * A search with other cost parameters leaves the table of the defaults in
+	 * place and gets a table of its own.
+	 */
+	@Test
+	void edgeCostTablesAreKeptPerCostParameters() {
+		IMECEPathFinder finder = TestGrids.finder(TestGrids.grid(8, 8, 0, 9, (x, y) -> (x * y) % 10), 9);
+		finder.setEdgeCostSweeps(Integer.MAX_VALUE);
+		EdgeCostTable defaults = finder.precomputeEdgeCosts();
+		QueryParameters other = new QueryParameters(9, 2, 3);
+		finder.setEdgeCostSweeps(0);
+		finder.search(new Point(0, 0), new Point(7, 7), SearchMode.DIJKSTRA, other);
+		assertSame(defaults, finder.getEdgeCosts(finder.getParameters()));
+		assertNotNull(finder.getEdgeCosts(other));
+	}
+
+	private static IMECEPathFinder batchFinder() {
+		return TestGrids.finder(TestGrids.random(30, 30, 100, new Random(7)), 80);
+	}
+
+	private static List<Mission> missions(int count) {
+		Random random = new Random(8);
+		List<Mission> missions = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			missions.add(new Mission(new Point(random.nextInt(30), random.nextInt(30)),
+					new Point(random.nextInt(30), random.nextInt(30)), SearchMode.values()[i % 5]));
+		return missions;
+	}
+
+	/**
+	 * INPUT hands the results over in the order of the missions, COMPLETION hands
+	 * every one over once, and both match searches run one at a time.
+	 */
+	@Test
+	void searchAllDeliversEveryResultInTheAskedOrder() throws InterruptedException {
+		IMECEPathFinder finder = batchFinder();
+		List<Mission> missions = missions(60);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (BatchOrder order : BatchOrder.values()) {
+				List<Mission> delivered = new ArrayList<>();
+				Map<Mission, SearchResult> results = new IdentityHashMap<>();
+				finder.searchAll(missions, executor, 4, order, (mission, result) -> {
+					delivered.add(mission);
+					results.put(mission, result);
+				});
+				assertEquals(missions.size(), delivered.size(), order.toString());
+				if (order == BatchOrder.INPUT)
+					assertEquals(missions, delivered);
+				for (Mission mission : missions) {
+					SearchResult expected = finder.search(mission.getStart(), mission.getEnd(), mission.getMode());
+					assertEquals(expected.getCost(), results.get(mission).getCost(), order + " " + mission);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The exception of a failing search reaches the caller.
+	 */
+	@Test
+	void searchAllRethrowsAFailingSearch() {
+		IMECEPathFinder finder = batchFinder();
+		List<Mission> missions = missions(20);
+		missions.add(7, new Mission(new Point(0, 0), new Point(1, 1)) {
+			@Override
+			public Point getStart() {
+				throw new IllegalStateException("broken mission");
+			}
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			IllegalStateException thrown = assertTimeoutPreemptively(Duration.ofSeconds(10),
+					() -> assertThrows(IllegalStateException.class,
+							() -> finder.searchAll(missions, executor, 3, BatchOrder.INPUT, (mission, result) -> {
+							})));
+			assertEquals("broken mission", thrown.getMessage());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * A worker that cannot allocate its workspace fails the batch instead of
+	 * leaving it waiting for results.
+	 */
+	@Test
+	void searchAllFailsWhenAWorkspaceCannotBeAllocated() {
+		ElevationGrid grid = batchFinder().getElevationGrid();
+		IMECEPathFinder finder = new IMECEPathFinder(grid, 80, 1, 1) {
+			@Override
+			SearchWorkspace newWorkspace(ElevationGrid grid) {
+				throw new OutOfMemoryError("no workspace");
+			}
+		};
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(OutOfMemoryError.class,
+					() -> finder.searchAll(missions(5), executor, 1, BatchOrder.COMPLETION, (mission, result) -> {
+					})));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Breadth-first search over the 8 neighbours at or below the flying height,
+	 * leaving the start whatever its elevation.
+	 */
+	private static boolean reaches(ElevationGrid grid, int maxFlyingHeight, Point start, Point end) {
+		int width = grid.getWidth();
+		int height = grid.getHeight();
+		boolean[] seen = new boolean[width * height];
+		ArrayDeque<Point> queue = new ArrayDeque<>();
+		seen[start.y * width + start.x] = true;
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			Point cell = queue.poll();
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dx = -1; dx <= 1; dx++) {
+					int x = cell.x + dx;
+					int y = cell.y + dy;
+					if (x < 0 || y < 0 || x >= width || y >= height || seen[y * width + x]
+							|| grid.get(x, y) > maxFlyingHeight)
+						continue;
+					seen[y * width + x] = true;
+					queue.add(new Point(x, y));
+				}
+			}
+		}
+		return seen[end.y * width + end.x];
+	}
+}
@@ -0,0 +1,53 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class OffHeapElevationGridTest {
+	/**
+	 * With 16-byte buffers a 9x7 grid spans several of them at every element
+	 * width, and every cell reads back what was written to it, on either side of
+	 * each buffer boundary.
+	 */
+	@Test
+	void readsAndWritesAcrossSegmentBoundaries() {
+		int[][] ranges = { { 10, 200 }, { -300, 40000 }, { -5, 1_000_000 } };
+		for (int i = 0; i < ranges.length; i++) {
+			int min = ranges[i][0];
+			int max = ranges[i][1];
+			OffHeapElevationGrid grid = new OffHeapElevationGrid(new RowMajorLayout(9, 7, 1), 1 << i, min, 4);
+			assertTrue(grid.segments().length > 4, "grid must span several buffers");
+			int range = max - min + 1;
+			TestGrids.fill(grid, (x, y) -> min + (x * 7919 + y * 104729) % range);
+			for (int y = 0; y < 7; y++) {
+				for (int x = 0; x < 9; x++)
+					assertEquals(min + (x * 7919 + y * 104729) % (max - min + 1), grid.get(x, y),
+							"width " + (1 << i) + " (" + x + ", " + y + ")");
+			}
+			for (int id = 0; id < grid.size(); id++) {
+				if (!grid.contains(grid.x(id), grid.y(id)))
+					assertTrue(grid.get(id) > max, "padding must read above max");
+			}
+		}
+	}
+
+	/**
+	 * The searches find the same paths on an off-heap grid split over many
+	 * buffers as on the heap.
+	 */
+	@Test
+	void searchesAsOnTheHeap() {
+		ElevationGrid heap = TestGrids.grid(20, 15, 0, 100, (x, y) -> (x * 37 + y * 61) % 101);
+		OffHeapElevationGrid offHeap = new OffHeapElevationGrid(heap.getLayout(), 1, 0, 6);
+		TestGrids.fill(offHeap, heap::get);
+		offHeap.setRange(0, 100);
+		IMECEPathFinder onHeap = TestGrids.finder(heap, 90);
+		IMECEPathFinder offHeapFinder = TestGrids.finder(offHeap, 90);
+		for (SearchMode mode : SearchMode.values()) {
+			SearchResult expected = onHeap.search(new Point(0, 0), new Point(19, 14), mode);
+			SearchResult actual = offHeapFinder.search(new Point(0, 0), new Point(19, 14), mode);
+			assertEquals(expected.getCost(), actual.getCost(), mode.toString());
+			assertEquals(expected.getPath().asList(), actual.getPath().asList(), mode.toString());
+		}
+	}
+}
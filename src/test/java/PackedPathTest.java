@@ -0,0 +1,46 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PackedPathTest {
+	@Test
+	void packsAndViewsPoints() {
+		List<Point> points = List.of(new Point(0, 0), new Point(1, 1), new Point(2, 1));
+		PackedPath path = PackedPath.of(points);
+		assertEquals(3, path.size());
+		assertEquals(2, path.getX(2));
+		assertEquals(1, path.getY(2));
+		assertEquals(points, path.asList());
+		assertEquals("[(0, 0), (1, 1), (2, 1)]", path.toString());
+		assertThrows(IndexOutOfBoundsException.class, () -> path.asList().get(3));
+		assertThrows(UnsupportedOperationException.class, () -> path.asList().add(new Point(3, 1)));
+		assertTrue(PackedPath.EMPTY.isEmpty());
+		assertThrows(IllegalArgumentException.class, () -> new PackedPath(new int[3]));
+	}
+
+	/**
+	 * A path found by a search runs from start to end in single steps, and costs
+	 * the same packed as copied into a list of Points.
+	 */
+	@Test
+	void searchedPathStepsFromStartToEnd() {
+		ElevationGrid grid = TestGrids.grid(12, 9, 0, 100, (x, y) -> (x * 17 + y * 23) % 101);
+		IMECEPathFinder finder = TestGrids.finder(grid, 100);
+		for (SearchMode mode : SearchMode.values()) {
+			PackedPath path = finder.getMostEfficientPackedPath(new Point(1, 7), new Point(10, 2), mode);
+			assertEquals(new Point(1, 7), path.get(0), mode.toString());
+			assertEquals(new Point(10, 2), path.get(path.size() - 1), mode.toString());
+			for (int i = 1; i < path.size(); i++) {
+				assertTrue(Math.abs(path.getX(i) - path.getX(i - 1)) <= 1, mode.toString());
+				assertTrue(Math.abs(path.getY(i) - path.getY(i - 1)) <= 1, mode.toString());
+			}
+			assertEquals(finder.getMostEfficientPathCost(path), finder.getMostEfficientPathCost(new ArrayList<>(path.asList())),
+					mode.toString());
+		}
+	}
+}
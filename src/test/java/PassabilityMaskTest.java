@@ -0,0 +1,47 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PassabilityMaskTest {
+	private static void assertSameCells(PassabilityMask expected, PassabilityMask actual, String message) {
+		ElevationGrid grid = expected.getGrid();
+		assertEquals(expected.getMaxFlyingHeight(), actual.getMaxFlyingHeight(), message);
+		for (int id = 0; id < grid.size(); id++)
+			assertEquals(expected.isPassable(id), actual.isPassable(id), message + " id " + id);
+	}
+
+	/**
+	 * Masks derived up and down a sweep of flying heights hold the same cells as
+	 * masks built from scratch, in every order, with and without padding. The
+	 * padding holds 0, below every height, and must stay impassable.
+	 */
+	@Test
+	void derivedMasksMatchBuiltOnes() {
+		Random random = new Random(13);
+		for (CellOrder order : CellOrder.values()) {
+			for (int padding = 0; padding <= 1; padding++) {
+				ElevationGrid grid = TestGrids.fill(new IntElevationGrid(GridLayout.of(order, 29, 17, padding), 0),
+						(x, y) -> random.nextInt(100));
+				PassabilityMask mask = PassabilityMask.build(grid, 50);
+				for (int height : new int[] { 70, 30, 30, 99, -1, 10, 100, 50 }) {
+					mask = mask.withMaxFlyingHeight(height);
+					assertSameCells(PassabilityMask.build(grid, height), mask, order + " padding " + padding);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The snapshot derives the masks of later heights from earlier ones and gets
+	 * the same cells.
+	 */
+	@Test
+	void snapshotMasksMatchBuiltOnes() {
+		ElevationGrid grid = TestGrids.grid(40, 40, 0, 255, (x, y) -> (x * 13 + y * 29) % 256);
+		TerrainSnapshot terrain = new TerrainSnapshot(grid);
+		for (int height = 0; height < 256; height += 37)
+			assertSameCells(PassabilityMask.build(grid, height), terrain.getPassability(height), "height " + height);
+	}
+}
@@ -0,0 +1,50 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SearchResultTest {
+	private static IMECEPathFinder finder() {
+		ElevationGrid grid = TestGrids.grid(15, 10, 0, 100, (x, y) -> x == 7 && y > 0 ? 100 : (x * 31 + y * 7) % 60);
+		return new IMECEPathFinder(grid, 90, 0.5, 2);
+	}
+
+	/**
+	 * The cost settled by every mode is the cost of walking its path, and the
+	 * result says how much work the search did.
+	 */
+	@Test
+	void reportsTheCostOfItsPath() {
+		IMECEPathFinder finder = finder();
+		for (SearchMode mode : SearchMode.values()) {
+			SearchResult result = finder.search(new Point(0, 9), new Point(14, 9), mode);
+			assertTrue(result.isFound(), mode.toString());
+			assertTrue(finder.verify(result), mode.toString());
+			if (mode != SearchMode.FIXED_POINT)
+				assertEquals(finder.getMostEfficientPathCost(result.getPath()), result.getCost(),
+						1e-9 * result.getCost(), mode.toString());
+			assertTrue(result.getExpandedCells() > 0, mode.toString());
+			assertTrue(result.getElapsedNanos() >= 0, mode.toString());
+			assertEquals(mode, result.getMode());
+		}
+	}
+
+	/**
+	 * A cost that does not belong to the path fails verification, an unreachable
+	 * end reports an infinite cost.
+	 */
+	@Test
+	void verifyCatchesWrongCosts() {
+		IMECEPathFinder finder = finder();
+		SearchResult result = finder.search(new Point(0, 9), new Point(14, 9));
+		SearchResult wrong = new SearchResult(result.getTerrain(), result.getParameters(), result.getMode(),
+				result.getPath(), result.getCost() + 1, result.getExpandedCells(), result.getElapsedNanos());
+		assertFalse(finder.verify(wrong));
+
+		SearchResult unreachable = finder.search(new Point(0, 9), new Point(7, 5));
+		assertFalse(unreachable.isFound());
+		assertEquals(Double.POSITIVE_INFINITY, unreachable.getCost());
+		assertTrue(finder.verify(unreachable));
+	}
+}
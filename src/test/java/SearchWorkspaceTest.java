@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SearchWorkspaceTest {
+	/**
+	 * A path is walked back from the direction byte of each cell, with padding
+	 * and flat offsets as well as with coordinates on a grid without padding.
+	 * Directions are those of IMECEPathFinder: 1 is east, 3 south, 7 south-east.
+	 */
+	@Test
+	void parentDirectionsTraceThePathBack() {
+		for (int padding = 0; padding <= 1; padding++) {
+			ElevationGrid grid = ElevationGrid.create(3, 3, padding, 0, 9);
+			int[] offsets = IMECEPathFinder.neighbourOffsets(grid);
+			byte[] parent = new byte[grid.size()];
+			Arrays.fill(parent, (byte) -1);
+			parent[grid.index(1, 0)] = 1;
+			parent[grid.index(2, 1)] = 7;
+			parent[grid.index(2, 2)] = 3;
+			PackedPath path = IMECEPathFinder.tracePath(grid, offsets, parent, grid.index(2, 2));
+			assertEquals(List.of(new Point(0, 0), new Point(1, 0), new Point(2, 1), new Point(2, 2)), path.asList(),
+					"padding " + padding);
+		}
+	}
+
+	/**
+	 * One workspace reused by queries of every mode in turn gives what a fresh
+	 * workspace gives every query, so nothing a search leaves behind leaks into
+	 * the next one.
+	 */
+	@Test
+	void reusedWorkspaceMatchesFreshOnes() {
+		Random random = new Random(17);
+		ElevationGrid grid = TestGrids.random(25, 20, 100, random);
+		IMECEPathFinder finder = TestGrids.finder(grid, 75);
+		SearchWorkspace reused = SearchWorkspace.forGrid(grid);
+		for (int q = 0; q < 40; q++) {
+			Point start = new Point(random.nextInt(25), random.nextInt(20));
+			Point end = new Point(random.nextInt(25), random.nextInt(20));
+			for (SearchMode mode : SearchMode.values()) {
+				SearchResult expected = finder.search(start, end, mode, SearchWorkspace.forGrid(grid));
+				SearchResult actual = finder.search(start, end, mode, reused);
+				assertEquals(expected.getCost(), actual.getCost(), mode + " " + start + " " + end);
+				assertEquals(expected.getPath().asList(), actual.getPath().asList(), mode + " " + start + " " + end);
+			}
+		}
+	}
+
+	@Test
+	void rejectsAWorkspaceTooSmallForTheGrid() {
+		IMECEPathFinder finder = TestGrids.finder(ElevationGrid.create(5, 5, 1, 0, 9), 9);
+		assertThrows(IllegalArgumentException.class,
+				() -> finder.search(new Point(0, 0), new Point(4, 4), SearchMode.DIJKSTRA, new SearchWorkspace(10)));
+	}
+}
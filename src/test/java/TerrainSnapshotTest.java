@@ -0,0 +1,169 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TerrainSnapshotTest {
+	private static TerrainSnapshot snapshot() {
+		return new TerrainSnapshot(TestGrids.grid(4, 4, 0, 15, (x, y) -> y * 4 + x));
+	}
+
+	/**
+	 * A search that reaches its end labels nothing. One that fails labels its
+	 * flying height, so the next unreachable mission under it, in any mode, is
+	 * rejected without expanding a cell.
+	 */
+	@Test
+	void failedSearchLabelsItsHeight() {
+		TerrainSnapshot terrain = snapshot();
+		IMECEPathFinder finder = new IMECEPathFinder(terrain, new QueryParameters(9, 1, 1));
+		assertTrue(finder.search(new Point(0, 0), new Point(1, 2)).isFound());
+		assertNull(terrain.getCachedComponents(9));
+
+		SearchResult first = finder.search(new Point(0, 0), new Point(3, 3));
+		assertFalse(first.isFound());
+		assertTrue(first.getExpandedCells() > 0);
+		assertNotNull(terrain.getCachedComponents(9));
+		for (SearchMode mode : SearchMode.values()) {
+			SearchResult again = finder.search(new Point(1, 0), new Point(3, 3), mode);
+			assertFalse(again.isFound(), mode.toString());
+			assertEquals(0, again.getExpandedCells(), mode.toString());
+		}
+		assertTrue(finder.search(new Point(0, 0), new Point(1, 2)).isFound());
+	}
+
+	/**
+	 * Going over MAX_CACHED_HEIGHTS drops the least recently used height only.
+	 */
+	@Test
+	void leastRecentlyUsedHeightIsDropped() {
+		TerrainSnapshot terrain = snapshot();
+		ComponentLabels first = terrain.getComponents(0);
+		for (int height = 1; height < TerrainSnapshot.MAX_CACHED_HEIGHTS; height++)
+			terrain.getComponents(height);
+		assertSame(first, terrain.getComponents(0));
+		terrain.getComponents(TerrainSnapshot.MAX_CACHED_HEIGHTS);
+		assertSame(first, terrain.getCachedComponents(0));
+		assertNull(terrain.getCachedComponents(1));
+		for (int height = 2; height <= TerrainSnapshot.MAX_CACHED_HEIGHTS; height++)
+			assertNotNull(terrain.getCachedComponents(height));
+	}
+
+	/**
+	 * The masks and labels kept never take more than the budget, yet the labels
+	 * of the height used last are kept. Labels larger than the whole budget are
+	 * returned without being kept.
+	 */
+	@Test
+	void cachedHeightsStayWithinTheBudget() {
+		ElevationGrid grid = snapshot().getGrid();
+		PassabilityMask mask = PassabilityMask.build(grid, 0);
+		long perHeight = mask.getBytes() + ComponentLabels.build(mask).getBytes();
+		TerrainSnapshot terrain = new TerrainSnapshot(grid, 2 * perHeight);
+		for (int height = 0; height < 16; height++) {
+			ComponentLabels labels = terrain.getComponents(height);
+			assertSame(labels, terrain.getCachedComponents(height));
+			assertTrue(terrain.getCachedBytes() <= 2 * perHeight, "height " + height);
+		}
+		assertNull(terrain.getCachedComponents(0));
+
+		TerrainSnapshot tight = new TerrainSnapshot(grid, perHeight / 2);
+		assertEquals(5, tight.getComponents(5).getMaxFlyingHeight());
+		assertNull(tight.getCachedComponents(5));
+		assertTrue(tight.getCachedBytes() <= perHeight / 2);
+	}
+
+	/**
+	 * Threads looking a height up get its labels, while other threads add
+	 * heights beyond MAX_CACHED_HEIGHTS, and the cache never keeps more.
+	 */
+	@Test
+	void concurrentLookupsShareTheCachedValues() throws InterruptedException {
+		TerrainSnapshot terrain = snapshot();
+		ComponentLabels kept = terrain.getComponents(5);
+		Thread[] threads = new Thread[4];
+		AtomicInteger mismatches = new AtomicInteger();
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 2000; i++) {
+					if (offset % 2 == 0) {
+						ComponentLabels labels = terrain.getComponents(5);
+						if (labels.getMaxFlyingHeight() != 5 || labels.getComponentCount() != kept.getComponentCount())
+							mismatches.incrementAndGet();
+					} else {
+						terrain.getComponents(6 + (i * 3 + offset) % 20);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(0, mismatches.get());
+		int cached = 0;
+		for (int height = 0; height < 30; height++) {
+			if (terrain.getCachedComponents(height) != null)
+				cached++;
+		}
+		assertTrue(cached <= TerrainSnapshot.MAX_CACHED_HEIGHTS);
+	}
+
+	/**
+	 * An update publishes a new snapshot and leaves the old one as it was. Cost
+	 * fields reaching the changed cell are dropped, the others move onto the new
+	 * terrain.
+	 */
+	@Test
+	void updatePublishesAndRebasesCachedFields() {
+		TerrainSnapshot before = snapshot();
+		IMECEPathFinder finder = new IMECEPathFinder(before, new QueryParameters(15, 1, 1));
+		QueryParameters low = new QueryParameters(9, 1, 1);
+		CostField reaching = finder.getCostField(new Point(0, 0));
+		finder.getCostField(new Point(0, 0), low);
+		assertTrue(reaching.reaches(3, 3));
+
+		TerrainSnapshot after = finder.updateTerrain(grid -> grid.set(grid.index(3, 3), 0));
+		assertSame(after, finder.getTerrain());
+		assertEquals(before.getVersion() + 1, after.getVersion());
+		assertEquals(15, before.getGrid().get(3, 3));
+		assertEquals(0, after.getGrid().get(3, 3));
+
+		CostFieldCache cache = finder.getCostFieldCache();
+		assertEquals(1, cache.getInvalidations());
+		assertEquals(1, cache.size());
+		long hits = cache.getHits();
+		assertSame(after, finder.getCostField(new Point(0, 0), low).getTerrain());
+		assertEquals(hits + 1, cache.getHits());
+		CostField recomputed = finder.getCostField(new Point(0, 0));
+		assertTrue(recomputed.getCost(new Point(3, 3)) < reaching.getCost(new Point(3, 3)));
+	}
+
+	/**
+	 * An off-heap grid stays off the heap when updated, a tiled grid is not
+	 * pulled into memory at all.
+	 */
+	@Test
+	void updateKeepsTheStorage(@TempDir Path dir) throws IOException {
+		TerrainSnapshot offHeap = new TerrainSnapshot(ElevationGrid.compact(snapshot().getGrid(), true));
+		assertTrue(offHeap.update(grid -> grid.set(grid.index(0, 0), 3)).getGrid() instanceof OffHeapElevationGrid);
+
+		String file = dir.resolve("grid.til").toString();
+		TiledElevationGrid.write(file, snapshot().getGrid(), 16);
+		try (TiledElevationGrid tiled = TiledElevationGrid.open(file, 1 << 20, 1)) {
+			TerrainSnapshot terrain = new TerrainSnapshot(tiled);
+			assertThrows(UnsupportedOperationException.class, () -> terrain.update(grid -> {
+			}));
+		}
+	}
+}
@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Grids the tests search on, filled cell by cell from a function of the
+ * coordinates or from a seeded random.
+ */
+final class TestGrids {
+	private TestGrids() {
+	}
+
+	/**
+	 * The most compact padded row-major grid for elevations from min to max,
+	 * every cell (x, y) set to elevation(x, y).
+	 */
+	static ElevationGrid grid(int width, int height, int min, int max, IntBinaryOperator elevation) {
+		return fill(ElevationGrid.create(width, height, 1, min, max), elevation);
+	}
+
+	/**
+	 * The most compact heap grid in the layout for elevations from min to max,
+	 * every cell (x, y) set to elevation(x, y).
+	 */
+	static ElevationGrid grid(GridLayout layout, int min, int max, IntBinaryOperator elevation) {
+		return fill(ElevationGrid.create(layout, min, max, false), elevation);
+	}
+
+	/**
+	 * A padded row-major grid of elevations from 0 to max, drawn row by row from
+	 * the random.
+	 */
+	static ElevationGrid random(int width, int height, int max, Random random) {
+		return random(new RowMajorLayout(width, height, 1), max, random);
+	}
+
+	/**
+	 * A heap grid in the layout of elevations from 0 to max, drawn row by row
+	 * from the random.
+	 */
+	static ElevationGrid random(GridLayout layout, int max, Random random) {
+		return grid(layout, 0, max, (x, y) -> random.nextInt(max + 1));
+	}
+
+	/**
+	 * Set every cell (x, y) of the grid to elevation(x, y), row by row.
+	 */
+	static ElevationGrid fill(ElevationGrid grid, IntBinaryOperator elevation) {
+		for (int y = 0; y < grid.getHeight(); y++) {
+			for (int x = 0; x < grid.getWidth(); x++)
+				grid.set(grid.index(x, y), elevation.applyAsInt(x, y));
+		}
+		return grid;
+	}
+
+	/**
+	 * Write the grid as a text grid, one row per line.
+	 */
+	static void writeText(Path file, ElevationGrid grid) throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int y = 0; y < grid.getHeight(); y++) {
+			for (int x = 0; x < grid.getWidth(); x++)
+				text.append(x == 0 ? "" : " ").append(grid.get(x, y));
+			text.append('\n');
+		}
+		Files.writeString(file, text);
+	}
+
+	/**
+	 * A path finder over the grid with unit fuel and climbing costs.
+	 */
+	static IMECEPathFinder finder(ElevationGrid grid, int maxFlyingHeight) {
+		return new IMECEPathFinder(grid, maxFlyingHeight, 1, 1);
+	}
+}
@@ -0,0 +1,162 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TiledElevationGridTest {
+	private static final int TILE_SIZE = 16;
+
+	@TempDir
+	Path dir;
+
+	private static ElevationGrid grid(int width, int height, int max) {
+		ElevationGrid grid = TestGrids.fill(new IntElevationGrid(width, height),
+				(x, y) -> (x * 7919 + y * 104729) % (max + 1));
+		grid.setRange(0, max);
+		return grid;
+	}
+
+	/**
+	 * A 37x23 grid leaves partly filled tiles on the right and bottom edges, and
+	 * reads back the same at every element width and in every cell order.
+	 */
+	@Test
+	void writesAndOpensGridsNotAMultipleOfTheTileSize() throws IOException {
+		for (int max : new int[] { 200, 40000, 1_000_000 }) {
+			ElevationGrid source = grid(37, 23, max);
+			String file = dir.resolve("grid" + max + ".til").toString();
+			TiledElevationGrid.write(file, source, TILE_SIZE);
+			assertTrue(TiledElevationGrid.isTiledGrid(file));
+			for (CellOrder order : CellOrder.values()) {
+				try (TiledElevationGrid tiled = TiledElevationGrid.open(file, 1 << 20, 1, order)) {
+					assertEquals(37, tiled.getWidth());
+					assertEquals(23, tiled.getHeight());
+					assertEquals(max, tiled.getMax());
+					for (int y = 0; y < 23; y++) {
+						for (int x = 0; x < 37; x++)
+							assertEquals(source.get(x, y), tiled.get(x, y), max + " " + order + " (" + x + ", " + y + ")");
+					}
+					assertEquals(Integer.MAX_VALUE, tiled.get(-1, 0));
+					assertEquals(Integer.MAX_VALUE, tiled.get(37, 22));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Converting a text grid, its rows streamed into the tiles a band at a time,
+	 * gives the same file as writing the grid from memory, with the bands on the
+	 * bottom edge only partly filled.
+	 */
+	@Test
+	void convertsTextGridBandByBand() throws IOException {
+		for (int max : new int[] { 200, 40000, 1_000_000 }) {
+			ElevationGrid source = grid(37, 23, max);
+			// the converter records the range the text holds, not the one declared
+			int min = Integer.MAX_VALUE;
+			int top = Integer.MIN_VALUE;
+			for (int y = 0; y < 23; y++) {
+				for (int x = 0; x < 37; x++) {
+					min = Math.min(min, source.get(x, y));
+					top = Math.max(top, source.get(x, y));
+				}
+			}
+			source.setRange(min, top);
+			Path text = dir.resolve("grid.txt");
+			TestGrids.writeText(text, source);
+			Path written = dir.resolve("written.til");
+			Path converted = dir.resolve("converted.til");
+			TiledElevationGrid.write(written.toString(), source, TILE_SIZE);
+			TiledElevationGrid.convert(text.toString(), 23, 37, converted.toString(), TILE_SIZE);
+			assertArrayEquals(Files.readAllBytes(written), Files.readAllBytes(converted), "max " + max);
+		}
+	}
+
+	/**
+	 * With room for two tiles, reading a third one drops the tile read least
+	 * recently, not the one read first.
+	 */
+	@Test
+	void evictsTheLeastRecentlyUsedTile() throws IOException {
+		String file = dir.resolve("grid.til").toString();
+		TiledElevationGrid.write(file, grid(48, 16, 200), TILE_SIZE);
+		try (TiledElevationGrid tiled = TiledElevationGrid.open(file, 2 * TILE_SIZE * TILE_SIZE, 1)) {
+			int a = 0;
+			int b = TILE_SIZE;
+			int c = 2 * TILE_SIZE;
+			for (int x : new int[] { a, b, a, c, a, b })
+				tiled.get(x, 3);
+			assertEquals(4, tiled.getCacheMisses());
+			assertEquals(2, tiled.getCacheHits());
+			assertEquals(2, tiled.getCacheEvictions());
+			assertEquals(2L * TILE_SIZE * TILE_SIZE, tiled.getCachedBytes());
+		}
+	}
+
+	/**
+	 * Searches of a batch running side by side on a tiled grid with room for a
+	 * few tiles, each thread moving between tiles, find what they find on the
+	 * heap.
+	 */
+	@Test
+	void concurrentSearchesReadTheirOwnTiles() throws IOException, InterruptedException {
+		ElevationGrid source = grid(70, 50, 200);
+		String file = dir.resolve("grid.til").toString();
+		TiledElevationGrid.write(file, source, TILE_SIZE);
+		IMECEPathFinder onHeap = TestGrids.finder(ElevationGrid.compact(source), 150);
+		List<Mission> missions = new ArrayList<>();
+		for (int i = 0; i < 40; i++)
+			missions.add(new Mission(new Point(i % 70, i % 50), new Point(69 - i % 70, (i * 7) % 50)));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (TiledElevationGrid tiled = TiledElevationGrid.open(file, 3 * TILE_SIZE * TILE_SIZE, 1)) {
+			IMECEPathFinder finder = TestGrids.finder(tiled, 150);
+			List<SearchResult> results = new ArrayList<>();
+			finder.searchAll(missions, executor, 4, BatchOrder.INPUT, (mission, result) -> results.add(result));
+			for (int i = 0; i < missions.size(); i++) {
+				Mission mission = missions.get(i);
+				assertEquals(onHeap.search(mission.getStart(), mission.getEnd()).getCost(), results.get(i).getCost(),
+						mission.toString());
+			}
+			assertTrue(tiled.getCacheEvictions() > 0, "the budget must have been exceeded");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The file constructor owns the tile file it opens and close releases it,
+	 * while grids given to a path finder are left open.
+	 */
+	@Test
+	void pathFinderClosesTheTileFileItOpened() throws IOException {
+		String file = dir.resolve("grid.til").toString();
+		TiledElevationGrid.write(file, grid(48, 16, 200), TILE_SIZE);
+		IMECEPathFinder finder = new IMECEPathFinder(file, 16, 48, 200, 1, 1);
+		TiledElevationGrid opened = (TiledElevationGrid) finder.getElevationGrid();
+		assertTrue(opened.isOpen());
+		finder.close();
+		assertFalse(opened.isOpen());
+
+		try (TiledElevationGrid given = TiledElevationGrid.open(file, TILE_SIZE * TILE_SIZE, 1)) {
+			TestGrids.finder(given, 200).close();
+			assertTrue(given.isOpen());
+			assertEquals(grid(48, 16, 200).get(47, 15), given.get(47, 15));
+		}
+
+		IMECEPathFinder copied = new IMECEPathFinder(file, 16, 48, 200, 1, 1, GridStorage.HEAP);
+		assertFalse(copied.getElevationGrid() instanceof TiledElevationGrid);
+		assertTrue(copied.search(new Point(0, 0), new Point(47, 15)).isFound());
+		copied.close();
+	}
+}